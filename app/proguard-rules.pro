@@ -23,3 +23,6 @@
 # If you keep the line number information, uncomment this to
 # hide the original source file title.
 #-renamesourcefileattribute SourceFile
+
+# Glide instantiates the modules declared in the manifest by reflection.
+-keep public class * implements com.bumptech.glide.module.GlideModule
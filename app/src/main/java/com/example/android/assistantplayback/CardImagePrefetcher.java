@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.assistantplayback;
+
+import android.support.v17.leanback.widget.ObjectAdapter;
+
+import com.example.android.assistantplayback.model.Movie;
+
+/**
+ * Preloads the card images of the rows the user is scrolling towards. <br>
+ * The direction is taken from the last two focused positions, so scrolling up prefetches the rows
+ * above and scrolling down the rows below. Rows that were already prefetched are skipped.
+ */
+public class CardImagePrefetcher {
+
+    private final VideoCardViewPresenter mPresenter;
+    private final int mNumColumns;
+    private final int mPrefetchRows;
+
+    private int mLastPosition = -1;
+    private int mPrefetchedFromRow = -1;
+    private int mPrefetchedToRow = -1;
+
+    /**
+     * @param presenter Presenter that decodes the card images.
+     * @param numColumns Number of columns of the grid.
+     * @param prefetchRows Number of rows to prefetch ahead of the focus.
+     */
+    public CardImagePrefetcher(
+            VideoCardViewPresenter presenter, int numColumns, int prefetchRows) {
+        mPresenter = presenter;
+        mNumColumns = numColumns;
+        mPrefetchRows = prefetchRows;
+    }
+
+    /**
+     * Prefetches the rows ahead of the focused position.
+     *
+     * @param adapter The adapter of the grid.
+     * @param position Position of the focused movie.
+     */
+    public void onItemSelected(ObjectAdapter adapter, int position) {
+        if (position < 0) {
+            return;
+        }
+        boolean scrollingUp = position < mLastPosition;
+        mLastPosition = position;
+
+        int focusedRow = position / mNumColumns;
+        int lastRow = (adapter.size() - 1) / mNumColumns;
+        int fromRow;
+        int toRow;
+        if (scrollingUp) {
+            fromRow = Math.max(0, focusedRow - mPrefetchRows);
+            toRow = focusedRow - 1;
+        } else {
+            fromRow = focusedRow + 1;
+            toRow = Math.min(lastRow, focusedRow + mPrefetchRows);
+        }
+
+        for (int row = fromRow; row <= toRow; row++) {
+            if (row >= mPrefetchedFromRow && row <= mPrefetchedToRow) {
+                continue;
+            }
+            int end = Math.min((row + 1) * mNumColumns, adapter.size());
+            for (int index = row * mNumColumns; index < end; index++) {
+                // A placeholder has no image yet, getting it starts loading its page.
+                Object item = adapter.get(index);
+                if (item instanceof Movie) {
+                    mPresenter.preload((Movie) item);
+                }
+            }
+        }
+        if (fromRow <= toRow) {
+            mPrefetchedFromRow = fromRow;
+            mPrefetchedToRow = toRow;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.assistantplayback;
+
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+import android.support.v4.app.Fragment;
+import android.util.Log;
+
+import com.bumptech.glide.BitmapRequestBuilder;
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.GlideBuilder;
+import com.bumptech.glide.load.engine.bitmap_recycle.LruBitmapPool;
+import com.bumptech.glide.load.engine.cache.LruResourceCache;
+import com.bumptech.glide.module.GlideModule;
+
+/**
+ * Owns the memory used by images across the app. <br>
+ * Card, details logo and background images all go through one Glide instance with a single heap
+ * budget, split between a memory cache of decoded bitmaps and a pool of bitmaps that decodes can
+ * reuse. The memory cache is keyed on the url, target size and transformation of a request, so
+ * every screen asks for images through the methods below to get the same key for the same image.
+ * Requests of a screen are started for its fragment, so they stop with it.
+ * The caches are trimmed when the system asks the app to release memory. <br>
+ * Registered as a {@link GlideModule} in the manifest.
+ */
+public class ImageMemoryManager implements GlideModule {
+
+    private static final String TAG = "ImageMemoryManager";
+
+    // Share of the image budget given to the bitmap pool, the rest is the memory cache.
+    private static final int BITMAP_POOL_SHARE_PERCENT = 33;
+
+    @Override
+    public void applyOptions(Context context, GlideBuilder builder) {
+        Context appContext = context.getApplicationContext();
+        ActivityManager activityManager =
+                (ActivityManager) appContext.getSystemService(Context.ACTIVITY_SERVICE);
+        int budgetPercent =
+                appContext.getResources().getInteger(R.integer.image_memory_budget_percent);
+        long budget = activityManager.getMemoryClass() * 1024L * 1024L * budgetPercent / 100;
+        int bitmapPoolSize = (int) (budget * BITMAP_POOL_SHARE_PERCENT / 100);
+        int memoryCacheSize = (int) (budget - bitmapPoolSize);
+        Log.d(
+                TAG,
+                "Image budget: "
+                        + memoryCacheSize / 1024
+                        + "KB memory cache, "
+                        + bitmapPoolSize / 1024
+                        + "KB bitmap pool");
+
+        builder.setMemoryCache(new LruResourceCache(memoryCacheSize));
+        builder.setBitmapPool(new LruBitmapPool(bitmapPoolSize));
+        appContext.registerComponentCallbacks(new TrimMemoryCallbacks(appContext));
+    }
+
+    @Override
+    public void registerComponents(Context context, Glide glide) {}
+
+    /**
+     * Builds the request for the image of a card.
+     *
+     * @param context Context used to start the request.
+     * @param url Url of the card image.
+     * @param width Width of the card image in pixels.
+     * @param height Height of the card image in pixels.
+     * @return A request decoding the image at the card size.
+     */
+    public static BitmapRequestBuilder<String, Bitmap> cardImage(
+            Context context, String url, int width, int height) {
+        return Glide.with(context).load(url).asBitmap().override(width, height).centerCrop();
+    }
+
+    /**
+     * Builds the request for the logo of the details screen. The target decides the size.
+     *
+     * @param fragment Fragment whose lifecycle the request follows.
+     * @param url Url of the logo image.
+     * @return A request for the logo.
+     */
+    public static BitmapRequestBuilder<String, Bitmap> detailsLogo(Fragment fragment, String url) {
+        return Glide.with(fragment)
+                .load(url)
+                .asBitmap()
+                .centerCrop()
+                .dontAnimate()
+                .error(R.drawable.assistant_tv_banner);
+    }
+
+    /**
+     * Builds the request for a full screen background. The target decides the size.
+     *
+     * @param fragment Fragment whose lifecycle the request follows.
+     * @param url Url of the background image.
+     * @return A request for the background.
+     */
+    public static BitmapRequestBuilder<String, Bitmap> background(Fragment fragment, String url) {
+        return Glide.with(fragment)
+                .load(url)
+                .asBitmap()
+                .centerCrop()
+                .error(R.drawable.assistant_tv_banner);
+    }
+
+    /** Releases image memory when the system runs low. */
+    private static final class TrimMemoryCallbacks implements ComponentCallbacks2 {
+
+        private final Context mContext;
+
+        TrimMemoryCallbacks(Context context) {
+            mContext = context;
+        }
+
+        @Override
+        public void onTrimMemory(int level) {
+            Log.d(TAG, "onTrimMemory(" + level + ")");
+            Glide.get(mContext).trimMemory(level);
+        }
+
+        @Override
+        public void onLowMemory() {
+            Glide.get(mContext).clearMemory();
+        }
+
+        @Override
+        public void onConfigurationChanged(Configuration newConfig) {}
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.assistantplayback;
+
+/**
+ * Counts latencies in fixed width buckets, so recording one is constant time and memory does not
+ * grow with the number of samples. Percentiles are accurate to the width of a bucket, latencies
+ * past the last bucket are counted in it.
+ */
+class LatencyHistogram {
+
+    private final long mBucketWidthMs;
+    private final int[] mBuckets;
+
+    private int mCount;
+    private long mMaxMs;
+
+    /**
+     * @param bucketWidthMs The width of a bucket in milliseconds.
+     * @param bucketCount The number of buckets.
+     */
+    LatencyHistogram(long bucketWidthMs, int bucketCount) {
+        mBucketWidthMs = bucketWidthMs;
+        mBuckets = new int[bucketCount];
+    }
+
+    void record(long latencyMs) {
+        int bucket = (int) Math.min(Math.max(latencyMs, 0) / mBucketWidthMs, mBuckets.length - 1);
+        mBuckets[bucket]++;
+        mCount++;
+        mMaxMs = Math.max(mMaxMs, latencyMs);
+    }
+
+    /**
+     * Returns a percentile of the recorded latencies.
+     *
+     * @param percentile The percentile, between 0 and 100.
+     * @return The upper bound of the bucket holding the percentile in milliseconds, or -1 if
+     *     nothing was recorded.
+     */
+    long getPercentile(double percentile) {
+        if (mCount == 0) {
+            return -1;
+        }
+        int rank = Math.max(1, (int) Math.ceil(percentile / 100 * mCount));
+        int seen = 0;
+        for (int bucket = 0; bucket < mBuckets.length; bucket++) {
+            seen += mBuckets[bucket];
+            if (seen >= rank) {
+                return Math.min((bucket + 1) * mBucketWidthMs, mMaxMs);
+            }
+        }
+        return mMaxMs;
+    }
+
+    int getCount() {
+        return mCount;
+    }
+
+    @Override
+    public String toString() {
+        return "p50="
+                + getPercentile(50)
+                + "ms p95="
+                + getPercentile(95)
+                + "ms p99="
+                + getPercentile(99)
+                + "ms n="
+                + mCount;
+    }
+}
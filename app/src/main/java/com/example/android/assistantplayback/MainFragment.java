@@ -16,16 +16,20 @@
 
 package com.example.android.assistantplayback;
 
+import android.database.ContentObserver;
 import android.os.Bundle;
+import android.os.Handler;
 import android.support.v17.leanback.app.VerticalGridSupportFragment;
-import android.support.v17.leanback.widget.ArrayObjectAdapter;
 import android.support.v17.leanback.widget.OnItemViewClickedListener;
+import android.support.v17.leanback.widget.OnItemViewSelectedListener;
 import android.support.v17.leanback.widget.Presenter;
 import android.support.v17.leanback.widget.Row;
 import android.support.v17.leanback.widget.RowPresenter;
 import android.support.v17.leanback.widget.VerticalGridPresenter;
 
-import com.example.android.assistantplayback.data.MockDatabase;
+import com.example.android.assistantplayback.data.CatalogLoader;
+import com.example.android.assistantplayback.data.MovieCatalogStore;
+import com.example.android.assistantplayback.data.VideoContentProvider;
 import com.example.android.assistantplayback.model.Movie;
 
 /** Displays videos in a vertical grid. */
@@ -33,13 +37,52 @@ public final class MainFragment extends VerticalGridSupportFragment {
 
     private static final int NUM_COLUMNS = 3;
 
+    // Movies loaded into the grid at once, and how many of those pages stay in memory.
+    private static final int PAGE_SIZE = 60;
+    private static final int MAX_RESIDENT_PAGES = 5;
+    // Load the next page when the focus is within this many rows of the last loaded movie.
+    private static final int PREFETCH_ROWS = 4;
+    // Number of rows ahead of the focus whose card images are decoded in advance.
+    private static final int PREFETCH_IMAGE_ROWS = 2;
+
+    private PagedMovieAdapter mRowAdapter;
+    private CatalogLoader mCatalogLoader;
+    private CardImagePrefetcher mImagePrefetcher;
+
+    // Reloads the grid when movies are inserted, updated or deleted through the provider.
+    private final ContentObserver mCatalogObserver =
+            new ContentObserver(new Handler()) {
+                @Override
+                public void onChange(boolean selfChange) {
+                    mRowAdapter.invalidate();
+                }
+            };
+
     @Override
     public void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
 
-        ArrayObjectAdapter mRowAdapter =
-                new ArrayObjectAdapter(new VideoCardViewPresenter(getContext()));
+        VideoCardViewPresenter cardPresenter = new VideoCardViewPresenter(getContext());
+        mImagePrefetcher =
+                new CardImagePrefetcher(cardPresenter, NUM_COLUMNS, PREFETCH_IMAGE_ROWS);
+        mCatalogLoader =
+                new CatalogLoader(
+                        PAGE_SIZE,
+                        getResources().getBoolean(R.bool.use_sqlite_catalog)
+                                ? MovieCatalogStore.getInstance(getContext())
+                                : null);
+        mRowAdapter =
+                new PagedMovieAdapter(
+                        cardPresenter,
+                        mCatalogLoader,
+                        PAGE_SIZE,
+                        MAX_RESIDENT_PAGES,
+                        PREFETCH_ROWS * NUM_COLUMNS);
         setAdapter(mRowAdapter);
+        getContext()
+                .getContentResolver()
+                .registerContentObserver(
+                        VideoContentProvider.MOVIES_URI, true, mCatalogObserver);
 
         setTitle(getString(R.string.assistant_playback_videos));
         setBadgeDrawable(
@@ -49,11 +92,15 @@ public final class MainFragment extends VerticalGridSupportFragment {
         gridPresenter.setNumberOfColumns(NUM_COLUMNS);
         setGridPresenter(gridPresenter);
 
-        for (Movie movie : MockDatabase.getAllMovies()) {
-            mRowAdapter.add(movie);
-        }
-
         setOnItemViewClickedListener(new ItemViewClickedListener());
+        setOnItemViewSelectedListener(new ItemViewSelectedListener());
+    }
+
+    @Override
+    public void onDestroy() {
+        getContext().getContentResolver().unregisterContentObserver(mCatalogObserver);
+        mCatalogLoader.cancel();
+        super.onDestroy();
     }
 
     private final class ItemViewClickedListener implements OnItemViewClickedListener {
@@ -64,9 +111,27 @@ public final class MainFragment extends VerticalGridSupportFragment {
                 Object item,
                 RowPresenter.ViewHolder rowViewHolder,
                 Row row) {
+            if (!(item instanceof Movie)) {
+                // The page of the movie is still loading.
+                return;
+            }
             Movie movie = (Movie) item;
 
-            startActivity(VideoDetailsActivity.createIntent(getContext(), movie));
+            startActivity(VideoDetailsActivity.createIntent(getContext(), movie.getId()));
+        }
+    }
+
+    private final class ItemViewSelectedListener implements OnItemViewSelectedListener {
+
+        @Override
+        public void onItemSelected(
+                Presenter.ViewHolder itemViewHolder,
+                Object item,
+                RowPresenter.ViewHolder rowViewHolder,
+                Row row) {
+            int position = mRowAdapter.indexOf(item);
+            mRowAdapter.onItemSelected(position);
+            mImagePrefetcher.onItemSelected(mRowAdapter, position);
         }
     }
 }
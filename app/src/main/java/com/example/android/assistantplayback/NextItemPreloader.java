@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.assistantplayback;
+
+import android.content.Context;
+import android.net.Uri;
+import android.support.annotation.Nullable;
+import android.support.v17.leanback.media.MediaPlayerAdapter;
+import android.support.v17.leanback.media.PlayerAdapter;
+import android.support.v4.media.MediaDescriptionCompat;
+import android.util.Log;
+
+/**
+ * Prepares the next item of a playlist on a second player while the current item plays, so that
+ * skipping to it does not wait for the media to be fetched and prepared. <br>
+ * The player is not attached to a surface until it is taken, only one item is preloaded at a
+ * time. The caller picks the uri, so an item with renditions is preloaded with the one it will be
+ * played with.
+ */
+class NextItemPreloader {
+
+    private static final String TAG = "NextItemPreloader";
+
+    private final Context mContext;
+
+    private MediaPlayerAdapter mPlayerAdapter;
+    private String mMediaId;
+    private Uri mMediaUri;
+
+    NextItemPreloader(Context context) {
+        mContext = context;
+    }
+
+    /**
+     * Starts preparing an item. A previously preloaded item is released.
+     *
+     * @param media The item to preload, or null if there is nothing to preload.
+     * @param uri The uri to play the item from.
+     */
+    void preload(@Nullable MediaDescriptionCompat media, @Nullable Uri uri) {
+        if (media == null || uri == null) {
+            release();
+            return;
+        }
+        if (media.getMediaId().equals(mMediaId) && uri.equals(mMediaUri)) {
+            return;
+        }
+        release();
+        Log.d(TAG, "Preloading " + media.getMediaId());
+        mPlayerAdapter = new MediaPlayerAdapter(mContext);
+        // The adapter reports to a callback while it prepares, the glue that takes it over later
+        // replaces it with its own.
+        mPlayerAdapter.setCallback(new PlayerAdapter.Callback() {});
+        mPlayerAdapter.setDataSource(uri);
+        mMediaId = media.getMediaId();
+        mMediaUri = uri;
+    }
+
+    /** Returns the uri of the preloaded item, or null if nothing is preloaded. */
+    @Nullable
+    Uri getMediaUri() {
+        return mMediaUri;
+    }
+
+    /**
+     * Hands over the player of a preloaded item. The caller becomes responsible for releasing it.
+     * If another item was preloaded, it is released.
+     *
+     * @param mediaId The id of the item about to be played.
+     * @return The player prepared with the item, or null if the item was not preloaded.
+     */
+    @Nullable
+    MediaPlayerAdapter take(String mediaId) {
+        if (mPlayerAdapter == null || !mediaId.equals(mMediaId)) {
+            release();
+            return null;
+        }
+        MediaPlayerAdapter playerAdapter = mPlayerAdapter;
+        mPlayerAdapter = null;
+        mMediaId = null;
+        mMediaUri = null;
+        return playerAdapter;
+    }
+
+    /** Releases the preloaded player, if any. */
+    void release() {
+        if (mPlayerAdapter != null) {
+            Log.d(TAG, "Releasing preloaded " + mMediaId);
+            mPlayerAdapter.release();
+            mPlayerAdapter = null;
+            mMediaId = null;
+            mMediaUri = null;
+        }
+    }
+}
@@ -0,0 +1,247 @@
+/*
+ * Copyright (c) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.assistantplayback;
+
+import android.os.SystemClock;
+import android.support.v17.leanback.widget.ObjectAdapter;
+import android.support.v17.leanback.widget.Presenter;
+import android.util.Log;
+import android.util.SparseArray;
+import android.util.SparseBooleanArray;
+
+import com.example.android.assistantplayback.data.CatalogLoader;
+import com.example.android.assistantplayback.model.Movie;
+
+import java.util.List;
+
+/**
+ * Pages movies from the catalog into a grid. <br>
+ * The adapter starts with a single page and loads the next one in the background when the focus
+ * gets close to the last loaded movie. At most a bounded number of pages stays in memory, the
+ * pages farthest from the focus are dropped first. Every page is loaded by the {@link
+ * CatalogLoader}, including a dropped page the grid comes back to. Until its page is loaded, a
+ * position holds a {@link Placeholder}. <br>
+ * When the catalog changes, {@link #invalidate()} drops every page, and the pages in view are
+ * loaded again.
+ */
+public class PagedMovieAdapter extends ObjectAdapter {
+
+    private static final String TAG = "PagedMovieAdapter";
+
+    /** Stands for a movie whose page is not loaded yet. */
+    public static final class Placeholder {
+
+        private final int mPosition;
+
+        Placeholder(int position) {
+            mPosition = position;
+        }
+
+        /** Returns the position of the movie in the adapter. */
+        public int getPosition() {
+            return mPosition;
+        }
+    }
+
+    private final CatalogLoader mLoader;
+    private final int mPageSize;
+    private final int mMaxResidentPages;
+    private final int mPrefetchDistance;
+    private final SparseArray<List<Movie>> mPages = new SparseArray<>();
+    private final SparseBooleanArray mLoadingPages = new SparseBooleanArray();
+    private final long mCreatedAt = SystemClock.elapsedRealtime();
+
+    private int mSize;
+    private int mFocusedPage;
+    private boolean mEndReached;
+
+    // Changes when the adapter is invalidated, so pages loaded before are dropped.
+    private int mGeneration;
+
+    /**
+     * @param presenter Presents the movies and the placeholders.
+     * @param loader Loads pages in the background, its batch size must be the page size.
+     * @param pageSize Number of movies in a page.
+     * @param maxResidentPages Maximum number of pages kept in memory.
+     * @param prefetchDistance How close the focus gets to the last loaded movie before the next
+     *     page is loaded.
+     */
+    public PagedMovieAdapter(
+            Presenter presenter,
+            CatalogLoader loader,
+            int pageSize,
+            int maxResidentPages,
+            int prefetchDistance) {
+        super(presenter);
+        mLoader = loader;
+        mPageSize = pageSize;
+        mMaxResidentPages = maxResidentPages;
+        mPrefetchDistance = prefetchDistance;
+        loadPage(0);
+    }
+
+    @Override
+    public int size() {
+        return mSize;
+    }
+
+    @Override
+    public Object get(int position) {
+        int page = position / mPageSize;
+        List<Movie> movies = mPages.get(page);
+        if (movies == null) {
+            // The page was dropped and the grid came back to it, or a prefetch reached it.
+            loadPage(page);
+            return new Placeholder(position);
+        }
+        int index = position % mPageSize;
+        return index < movies.size() ? movies.get(index) : new Placeholder(position);
+    }
+
+    /**
+     * Finds the position of a movie or of a placeholder among the pages in memory.
+     *
+     * @param item A movie or a placeholder.
+     * @return The position of the item, or -1 if its page is not in memory.
+     */
+    public int indexOf(Object item) {
+        if (item instanceof Placeholder) {
+            return ((Placeholder) item).getPosition();
+        }
+        for (int i = 0; i < mPages.size(); i++) {
+            int index = mPages.valueAt(i).indexOf(item);
+            if (index >= 0) {
+                return mPages.keyAt(i) * mPageSize + index;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Drops every page, because the catalog changed. The grid keeps its size until the pages in
+     * view are loaded again, a page that comes back shorter ends the grid.
+     */
+    public void invalidate() {
+        mGeneration++;
+        mPages.clear();
+        mLoadingPages.clear();
+        mEndReached = false;
+        if (mSize == 0) {
+            loadPage(0);
+        } else {
+            // Binding the items loads their pages again.
+            notifyItemRangeChanged(0, mSize);
+        }
+    }
+
+    /**
+     * Tells the adapter where the focus is, to load the next page and drop far away pages.
+     *
+     * @param position Position of the focused item.
+     */
+    public void onItemSelected(int position) {
+        if (position < 0) {
+            return;
+        }
+        mFocusedPage = position / mPageSize;
+        if (!mEndReached && position >= mSize - mPrefetchDistance) {
+            // A last page that is not full is loaded again, in case the catalog grew.
+            loadPage(mSize / mPageSize);
+        }
+        trimPages(-1);
+    }
+
+    private void loadPage(final int page) {
+        if (mLoadingPages.get(page)) {
+            return;
+        }
+        mLoadingPages.put(page, true);
+        final int generation = mGeneration;
+        mLoader.load(
+                page * mPageSize,
+                mPageSize,
+                new CatalogLoader.Callback() {
+                    @Override
+                    public void onMoviesLoaded(int start, List<Movie> movies) {
+                        if (generation == mGeneration) {
+                            onPageLoaded(page, movies);
+                        }
+                    }
+                });
+    }
+
+    private void onPageLoaded(int page, List<Movie> movies) {
+        mLoadingPages.delete(page);
+        int start = page * mPageSize;
+        if (start > mSize) {
+            // The catalog ended before this page while it was loading.
+            return;
+        }
+        if (page == 0 && mSize == 0) {
+            Log.d(
+                    TAG,
+                    "First page loaded after "
+                            + (SystemClock.elapsedRealtime() - mCreatedAt)
+                            + "ms");
+        }
+        int end = start + movies.size();
+        int oldSize = mSize;
+        if (!movies.isEmpty()) {
+            mPages.put(page, movies);
+        }
+        if (movies.size() < mPageSize) {
+            // This is the last page of the catalog, which may be shorter than it was.
+            mEndReached = true;
+            if (end < mSize) {
+                for (int i = mPages.size() - 1; i >= 0 && mPages.keyAt(i) > page; i--) {
+                    mPages.removeAt(i);
+                }
+                mSize = end;
+                notifyItemRangeRemoved(end, oldSize - end);
+            }
+        }
+        if (end > mSize) {
+            mSize = end;
+            notifyItemRangeInserted(oldSize, end - oldSize);
+        }
+        if (Math.min(end, oldSize) > start) {
+            // Replaces the placeholders, or the movies of a page that was loaded again.
+            notifyItemRangeChanged(start, Math.min(end, oldSize) - start);
+        }
+        trimPages(page);
+    }
+
+    /** Drops the pages farthest from the focus until at most the maximum number is left. */
+    private void trimPages(int keptPage) {
+        while (mPages.size() > mMaxResidentPages) {
+            int farthest = -1;
+            for (int i = 0; i < mPages.size(); i++) {
+                int page = mPages.keyAt(i);
+                if (page != keptPage
+                        && (farthest < 0
+                                || Math.abs(page - mFocusedPage)
+                                        > Math.abs(mPages.keyAt(farthest) - mFocusedPage))) {
+                    farthest = i;
+                }
+            }
+            if (farthest < 0) {
+                return;
+            }
+            mPages.removeAt(farthest);
+        }
+    }
+}
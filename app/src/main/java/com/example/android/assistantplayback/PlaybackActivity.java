@@ -40,6 +40,7 @@ public class PlaybackActivity extends FragmentActivity {
 
     @Override
     protected void onCreate(@Nullable Bundle savedInstanceState) {
+        PlaybackStartupTracer.mark(PlaybackStartupTracer.STAGE_ACTIVITY_CREATED);
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_playback);
     }
@@ -17,25 +17,54 @@
 package com.example.android.assistantplayback;
 
 import android.app.Activity;
+import android.content.res.Resources;
+import android.net.Uri;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.SystemClock;
 import android.support.v17.leanback.app.VideoSupportFragment;
 import android.support.v17.leanback.app.VideoSupportFragmentGlueHost;
 import android.support.v17.leanback.media.MediaPlayerAdapter;
 import android.support.v17.leanback.media.PlaybackGlue;
-import android.support.v17.leanback.media.PlaybackTransportControlGlue;
+import android.support.v17.leanback.media.PlayerAdapter;
 import android.support.v4.media.MediaDescriptionCompat;
 import android.support.v4.media.session.MediaControllerCompat;
 import android.support.v4.media.session.MediaSessionCompat;
 import android.support.v4.media.session.PlaybackStateCompat;
 import android.util.Log;
 
+import com.example.android.assistantplayback.data.MockDatabase;
+import com.example.android.assistantplayback.data.WatchProgressStore;
+import com.example.android.assistantplayback.model.Movie;
+import com.example.android.assistantplayback.model.Rendition;
 import com.example.android.assistantplayback.playlist.ListPlaylistAdapter;
 import com.example.android.assistantplayback.playlist.MockPlaylistAdapterFactory;
 
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
 /**
  * Plays back a video. Syncs media session and playback glue during video playback. <br>
  * <br>
- * A movie's id is required to be passed in by id via the activity's extras.
+ * A movie's id is required to be passed in by id via the activity's extras. <br>
+ * <br>
+ * While an item plays, the next item of the playlist is prepared on a second player which takes
+ * over when the user skips to it or when the current item completes. <br>
+ * <br>
+ * In continuous playback, the next item starts after a short countdown when the current one
+ * completes. The playlist can also repeat and be shuffled from the media session. <br>
+ * <br>
+ * The media session queue holds a window of the playlist around the current item, see {@link
+ * QueueWindowPublisher}. <br>
+ * <br>
+ * The position of playback is saved in the {@link WatchProgressStore}, a movie resumes where the
+ * user left it. <br>
+ * <br>
+ * A movie with several renditions starts on the one picked by the {@link RenditionSelector}, and
+ * switches to a higher one once throughput has been measured. The higher rendition is prepared on
+ * a standby player and positioned a little ahead of playback, which it takes over from when
+ * playback gets there, so playback does not stall meanwhile. A paused video stays paused.
  */
 public class PlaybackFragment extends VideoSupportFragment {
 
@@ -51,12 +80,103 @@ public class PlaybackFragment extends VideoSupportFragment {
                     | PlaybackStateCompat.ACTION_STOP
                     | PlaybackStateCompat.ACTION_SKIP_TO_PREVIOUS
                     | PlaybackStateCompat.ACTION_SKIP_TO_NEXT
-                    | PlaybackStateCompat.ACTION_SEEK_TO;
+                    | PlaybackStateCompat.ACTION_SEEK_TO
+                    | PlaybackStateCompat.ACTION_SKIP_TO_QUEUE_ITEM
+                    | PlaybackStateCompat.ACTION_SET_REPEAT_MODE
+                    | PlaybackStateCompat.ACTION_SET_SHUFFLE_MODE;
+
+    private static final long ONE_SECOND = TimeUnit.SECONDS.toMillis(1);
+
+    // A movie stopped this close to its end is considered watched and starts over next time.
+    private static final long WATCHED_MARGIN = TimeUnit.SECONDS.toMillis(30);
+
+    // How far ahead of playback a standby rendition is positioned, so that it has buffered there
+    // by the time playback reaches it.
+    private static final long RENDITION_SWITCH_LEAD = TimeUnit.SECONDS.toMillis(2);
+
+    // How far from playback a standby rendition may be and still take over without a seek.
+    private static final long RENDITION_SWITCH_TOLERANCE = 100;
+
+    // A standby rendition that keeps missing playback, as the user seeks around, is given up.
+    private static final int MAX_RENDITION_SWITCH_SEEKS = 3;
 
     private MediaSessionCompat mSession;
+    private PlaybackStatePublisher mPlaybackStatePublisher;
+    private QueueWindowPublisher mQueueWindowPublisher;
     private MediaSessionCallback mMediaSessionCallback;
-    private PlaybackTransportControlGlue<MediaPlayerAdapter> mPlayerGlue;
+    private PrimaryPlaybackControlsGlue<MediaPlayerAdapter> mPlayerGlue;
+    private VideoSupportFragmentGlueHost mGlueHost;
+    private NextItemPreloader mNextItemPreloader;
     private ListPlaylistAdapter<?> mPlaylistAdapter;
+    private WatchProgressStore mWatchProgressStore;
+    private VideoFrameSeekDataProvider mSeekDataProvider;
+    private RenditionSelector mRenditionSelector;
+    private Rendition mCurrentRendition;
+    private MediaPlayerAdapter mRenditionPlayerAdapter;
+    private Rendition mRenditionPlayerRendition;
+    private long mRenditionSwitchPosition;
+    private int mRenditionSwitchSeeks;
+    private boolean mPlayWhenReady = true;
+    private boolean mResumePending;
+    private long mSkipStartTime;
+    private final Handler mHandler = new Handler();
+    private boolean mCountingDown;
+    private int mCountdownSeconds;
+
+    private final Runnable mCountdownRunnable =
+            new Runnable() {
+                @Override
+                public void run() {
+                    MediaDescriptionCompat next = mPlaylistAdapter.peekNextItem();
+                    if (next == null) {
+                        mCountingDown = false;
+                        return;
+                    }
+                    if (mCountdownSeconds <= 0) {
+                        mCountingDown = false;
+                        mMediaSessionCallback.onSkipToNext();
+                        return;
+                    }
+                    mPlayerGlue.setSubtitle(
+                            getString(
+                                    R.string.up_next_countdown,
+                                    next.getTitle(),
+                                    mCountdownSeconds));
+                    mCountdownSeconds--;
+                    mHandler.postDelayed(this, ONE_SECOND);
+                }
+            };
+
+    private final Runnable mRenditionSwitchRunnable =
+            new Runnable() {
+                @Override
+                public void run() {
+                    onRenditionPlayerPositioned();
+                }
+            };
+    private final PlaybackGlue.PlayerCallback resumePlayerCallback =
+            new PlaybackGlue.PlayerCallback() {
+                @Override
+                public void onPreparedStateChanged(PlaybackGlue glue) {
+                    if (glue.isPrepared() && mResumePending) {
+                        mResumePending = false;
+                        long position = mWatchProgressStore.getPosition(getCurrentMovieId());
+                        if (position > 0) {
+                            Log.d(TAG, "Resuming at " + position + "ms");
+                            mPlayerGlue.seekPlayerTo(position);
+                        }
+                    }
+                }
+            };
+
+    private final PrimaryPlaybackControlsGlue.ProgressListener progressListener =
+            new PrimaryPlaybackControlsGlue.ProgressListener() {
+                @Override
+                public void onProgressUpdated(long position, long duration) {
+                    saveProgress(position, duration);
+                }
+            };
+
     private final PlaybackGlue.PlayerCallback playWhenReadyPlayerCallback =
             new PlayWhenReadyPlayerCallback();
 
@@ -71,15 +191,44 @@ public class PlaybackFragment extends VideoSupportFragment {
                                     ? PlaybackStateCompat.STATE_PLAYING
                                     : PlaybackStateCompat.STATE_PAUSED;
                     mMediaSessionCallback.updatePlaybackState(
-                            state,
-                            mPlayerGlue.getCurrentPosition(),
-                            mPlaylistAdapter.getCurrentItem());
+                            state, mPlayerGlue.getCurrentPosition());
                     Log.d(TAG, "PlayerCallback: playback state: " + state);
                 }
             };
 
+    private final PlaybackGlue.PlayerCallback lookAheadPlayerCallback =
+            new PlaybackGlue.PlayerCallback() {
+                @Override
+                public void onPreparedStateChanged(PlaybackGlue glue) {
+                    // Waits for the current item to be ready so both players do not compete.
+                    preloadNextItem();
+                    if (glue.isPrepared()) {
+                        setupSeekDataProvider();
+                        probeHigherRendition();
+                    }
+                }
+
+                @Override
+                public void onPlayStateChanged(PlaybackGlue glue) {
+                    if (glue.isPlaying() && mSkipStartTime > 0) {
+                        Log.d(
+                                TAG,
+                                "Time to first frame after skip: "
+                                        + (SystemClock.elapsedRealtime() - mSkipStartTime)
+                                        + "ms");
+                        mSkipStartTime = 0;
+                    }
+                }
+
+                @Override
+                public void onPlayCompleted(PlaybackGlue glue) {
+                    onItemCompleted();
+                }
+            };
+
     @Override
     public void onCreate(Bundle savedInstanceState) {
+        PlaybackStartupTracer.mark(PlaybackStartupTracer.STAGE_FRAGMENT_CREATED);
         super.onCreate(savedInstanceState);
 
         int movieId = getActivity().getIntent().getIntExtra(EXTRA_MOVIE_ID, -1);
@@ -96,36 +245,350 @@ public class PlaybackFragment extends VideoSupportFragment {
                 MediaSessionCompat.FLAG_HANDLES_MEDIA_BUTTONS
                         | MediaSessionCompat.FLAG_HANDLES_TRANSPORT_CONTROLS);
         mSession.setActive(true);
+        mPlaybackStatePublisher =
+                new PlaybackStatePublisher(
+                        mSession, getResources().getInteger(R.integer.playback_state_window_ms));
+        mQueueWindowPublisher =
+                new QueueWindowPublisher(
+                        mSession,
+                        mPlaylistAdapter,
+                        getResources().getInteger(R.integer.queue_window_size));
         MediaControllerCompat.setMediaController((Activity) getContext(), mSession.getController());
 
-        mPlayerGlue =
-                new PrimaryPlaybackControlsGlue<>(
-                        getContext(),
-                        new MediaPlayerAdapter(getContext()),
-                        mSession.getController());
-        mPlayerGlue.setHost(new VideoSupportFragmentGlueHost(this));
-        mPlayerGlue.addPlayerCallback(playWhenReadyPlayerCallback);
-        mPlayerGlue.addPlayerCallback(playPausePlayerCallback);
+        mWatchProgressStore = WatchProgressStore.getInstance(getContext());
+        mRenditionSelector = RenditionSelector.getInstance();
+        mGlueHost = new VideoSupportFragmentGlueHost(this);
+        mNextItemPreloader = new NextItemPreloader(getContext());
+        mMediaSessionCallback = new MediaSessionCallback();
+        setPlayerAdapter(new MediaPlayerAdapter(getContext()));
 
-        mMediaSessionCallback = new MediaSessionCallback(mPlayerGlue);
         mSession.setCallback(mMediaSessionCallback);
 
         playMedia(mPlaylistAdapter.getCurrentItem());
+        mQueueWindowPublisher.update();
+    }
+
+    @Override
+    public void onStop() {
+        saveProgress(mPlayerGlue.getCurrentPosition(), mPlayerGlue.getDuration());
+        mWatchProgressStore.flush();
+        super.onStop();
+    }
+
+    @Override
+    public void onDestroy() {
+        // Makes sure the last state reaches the session before the fragment goes away.
+        mHandler.removeCallbacks(mCountdownRunnable);
+        mPlaybackStatePublisher.release();
+        mNextItemPreloader.release();
+        releaseRenditionPlayer();
+        releaseSeekDataProvider();
+        Log.d(TAG, "Playback states: " + mPlaybackStatePublisher);
+        Log.d(TAG, "Startup latency:\n" + PlaybackStartupTracer.getSummary());
+        super.onDestroy();
     }
 
     private void playMedia(MediaDescriptionCompat media) {
+        mResumePending = true;
+        mPlayWhenReady = true;
+        mCountingDown = false;
+        mHandler.removeCallbacks(mCountdownRunnable);
+        releaseRenditionPlayer();
+        // Going anywhere but to the preloaded item releases it.
+        Uri preloadedUri = mNextItemPreloader.getMediaUri();
+        MediaPlayerAdapter preloaded = mNextItemPreloader.take(media.getMediaId());
+        if (preloaded != null) {
+            setPlayerAdapter(preloaded);
+        }
         mPlayerGlue.setTitle(media.getTitle());
         mPlayerGlue.setSubtitle(media.getDescription());
-        mPlayerGlue.getPlayerAdapter().setDataSource(media.getMediaUri());
+        List<Rendition> renditions = getCurrentRenditions();
+        if (preloaded != null) {
+            mCurrentRendition = findRendition(renditions, preloadedUri.toString());
+        } else if (renditions.isEmpty()) {
+            mCurrentRendition = null;
+            mPlayerGlue.getPlayerAdapter().setDataSource(media.getMediaUri());
+        } else {
+            mCurrentRendition = mRenditionSelector.select(renditions);
+            Log.d(TAG, "Starting on " + mCurrentRendition.getHeight() + "p");
+            mPlayerGlue.getPlayerAdapter().setDataSource(Uri.parse(mCurrentRendition.getUrl()));
+        }
+        PlaybackStartupTracer.mark(PlaybackStartupTracer.STAGE_DATA_SOURCE_SET);
+    }
+
+    /** Replays the item, counts down to the next one, or stops, depending on the playback mode. */
+    private void onItemCompleted() {
+        mWatchProgressStore.setPosition(getCurrentMovieId(), 0);
+        if (!getResources().getBoolean(R.bool.continuous_playback)) {
+            return;
+        }
+        if (mPlaylistAdapter.getRepeatMode() == PlaybackStateCompat.REPEAT_MODE_ONE) {
+            mPlayerGlue.seekPlayerTo(0);
+            mPlayerGlue.play();
+            return;
+        }
+        if (mPlaylistAdapter.peekNextItem() != null) {
+            mCountdownSeconds = getResources().getInteger(R.integer.auto_advance_countdown_seconds);
+            mCountingDown = true;
+            mHandler.post(mCountdownRunnable);
+        }
+    }
+
+    /** Stops a countdown to the next item started by {@link #onItemCompleted()}. */
+    private void cancelCountdown() {
+        if (mCountingDown) {
+            mCountingDown = false;
+            mHandler.removeCallbacks(mCountdownRunnable);
+            mPlayerGlue.setSubtitle(mPlaylistAdapter.getCurrentItem().getDescription());
+        }
+    }
+
+    /** Prepares the item that now follows the current one, if the current one is ready. */
+    private void preloadNextItem() {
+        if (mPlayerGlue.isPrepared()) {
+            MediaDescriptionCompat next = mPlaylistAdapter.peekNextItem();
+            mNextItemPreloader.preload(next, next != null ? selectMediaUri(next) : null);
+        }
+    }
+
+    /** Returns the uri of the rendition an item would start on, or its own uri if it has none. */
+    private Uri selectMediaUri(MediaDescriptionCompat media) {
+        List<Rendition> renditions = getRenditions(Integer.parseInt(media.getMediaId()));
+        if (renditions.isEmpty()) {
+            return media.getMediaUri();
+        }
+        return Uri.parse(mRenditionSelector.select(renditions).getUrl());
+    }
+
+    private void saveProgress(long position, long duration) {
+        if (mResumePending) {
+            // The position belongs to the previous item or to before the resume.
+            return;
+        }
+        if (duration > 0 && position >= duration - WATCHED_MARGIN) {
+            position = 0;
+        }
+        mWatchProgressStore.setPosition(getCurrentMovieId(), position);
+    }
+
+    /**
+     * Measures throughput with the rendition above the current one, and switches to the best
+     * rendition for the new estimate if it is higher than the current one.
+     */
+    private void probeHigherRendition() {
+        if (mCurrentRendition == null) {
+            return;
+        }
+        List<Rendition> renditions = getCurrentRenditions();
+        int higher = renditions.indexOf(mCurrentRendition) + 1;
+        if (higher == 0 || higher >= renditions.size()) {
+            return;
+        }
+        final Rendition probed = mCurrentRendition;
+        mRenditionSelector.probe(
+                renditions.get(higher).getUrl(),
+                new RenditionSelector.Callback() {
+                    @Override
+                    public void onThroughputMeasured(long estimate) {
+                        // Ignores results for an item that is not playing anymore.
+                        if (!isAdded() || mCurrentRendition != probed) {
+                            return;
+                        }
+                        Rendition best = mRenditionSelector.select(getCurrentRenditions());
+                        if (best.getBitrate() > mCurrentRendition.getBitrate()) {
+                            switchRendition(best);
+                        }
+                    }
+                });
+    }
+
+    /**
+     * Prepares a rendition on a standby player while the current one keeps playing. Once prepared,
+     * the standby player seeks ahead of playback, see {@link #positionRenditionPlayer()}.
+     */
+    private void switchRendition(Rendition rendition) {
+        releaseRenditionPlayer();
+        Log.d(TAG, "Preparing " + rendition.getHeight() + "p");
+        final MediaPlayerAdapter playerAdapter =
+                new MediaPlayerAdapter(getContext()) {
+                    @Override
+                    protected void onSeekComplete() {
+                        super.onSeekComplete();
+                        // Ignores a player that was released or took over in the meantime.
+                        if (this == mRenditionPlayerAdapter) {
+                            onRenditionPlayerPositioned();
+                        }
+                    }
+                };
+        playerAdapter.setCallback(
+                new PlayerAdapter.Callback() {
+                    @Override
+                    public void onPreparedStateChanged(PlayerAdapter adapter) {
+                        if (adapter.isPrepared() && playerAdapter == mRenditionPlayerAdapter) {
+                            positionRenditionPlayer();
+                        }
+                    }
+                });
+        playerAdapter.setDataSource(Uri.parse(rendition.getUrl()));
+        mRenditionPlayerAdapter = playerAdapter;
+        mRenditionPlayerRendition = rendition;
+        mRenditionSwitchSeeks = 0;
+    }
+
+    /**
+     * Seeks the standby player to where playback will be a little later, or to where it is while
+     * paused, so it can take over without seeking once playback gets there.
+     */
+    private void positionRenditionPlayer() {
+        if (mRenditionSwitchSeeks++ == MAX_RENDITION_SWITCH_SEEKS) {
+            Log.d(TAG, "Giving up on " + mRenditionPlayerRendition.getHeight() + "p");
+            releaseRenditionPlayer();
+            return;
+        }
+        mRenditionSwitchPosition =
+                mPlayerGlue.getCurrentPosition()
+                        + (mPlayerGlue.isPlaying() ? RENDITION_SWITCH_LEAD : 0);
+        mRenditionPlayerAdapter.seekTo(mRenditionSwitchPosition);
+    }
+
+    /**
+     * Hands playback over to the standby player if playback has reached its position, waits for
+     * playback to get there, or positions it again if the user sought or paused in the meantime.
+     */
+    private void onRenditionPlayerPositioned() {
+        long remaining = mRenditionSwitchPosition - mPlayerGlue.getCurrentPosition();
+        if (Math.abs(remaining) <= RENDITION_SWITCH_TOLERANCE) {
+            takeOverFromRenditionPlayer();
+        } else if (mPlayerGlue.isPlaying()
+                && remaining > 0
+                && remaining <= RENDITION_SWITCH_LEAD) {
+            mHandler.postDelayed(mRenditionSwitchRunnable, remaining);
+        } else {
+            positionRenditionPlayer();
+        }
+    }
+
+    private void takeOverFromRenditionPlayer() {
+        Log.d(TAG, "Switching up to " + mRenditionPlayerRendition.getHeight() + "p");
+        MediaPlayerAdapter playerAdapter = mRenditionPlayerAdapter;
+        mCurrentRendition = mRenditionPlayerRendition;
+        mRenditionPlayerAdapter = null;
+        mRenditionPlayerRendition = null;
+        mPlayWhenReady = mPlayerGlue.isPlaying();
+        setPlayerAdapter(playerAdapter);
+    }
+
+    private void releaseRenditionPlayer() {
+        mHandler.removeCallbacks(mRenditionSwitchRunnable);
+        if (mRenditionPlayerAdapter != null) {
+            mRenditionPlayerAdapter.release();
+            mRenditionPlayerAdapter = null;
+            mRenditionPlayerRendition = null;
+        }
+    }
+
+    private List<Rendition> getCurrentRenditions() {
+        return getRenditions(getCurrentMovieId());
+    }
+
+    private static List<Rendition> getRenditions(int movieId) {
+        Movie movie = MockDatabase.getMovieWithId(movieId);
+        return movie == null || movie.getRenditions() == null
+                ? Collections.<Rendition>emptyList()
+                : movie.getRenditions();
+    }
+
+    private static Rendition findRendition(List<Rendition> renditions, String url) {
+        for (Rendition rendition : renditions) {
+            if (rendition.getUrl().equals(url)) {
+                return rendition;
+            }
+        }
+        return null;
     }
 
-    /** Checks if the glue is prepared before telling the glue to start playback. */
-    private static class PlayWhenReadyPlayerCallback extends PlaybackGlue.PlayerCallback {
+    /**
+     * Provides thumbnails of the playing rendition while the user seeks through it. Only local
+     * videos get thumbnails, frames of a remote one would each be fetched over the network.
+     */
+    private void setupSeekDataProvider() {
+        releaseSeekDataProvider();
+        long duration = mPlayerGlue.getDuration();
+        Uri videoUri =
+                mCurrentRendition != null
+                        ? Uri.parse(mCurrentRendition.getUrl())
+                        : mPlaylistAdapter.getCurrentItem().getMediaUri();
+        if (duration <= 0 || !VideoFrameSeekDataProvider.supports(videoUri)) {
+            return;
+        }
+        Resources res = getResources();
+        mSeekDataProvider =
+                new VideoFrameSeekDataProvider(
+                        videoUri,
+                        duration,
+                        TimeUnit.SECONDS.toMillis(
+                                res.getInteger(R.integer.seek_thumbnail_interval_seconds)),
+                        res.getDimensionPixelSize(R.dimen.seek_thumbnail_width),
+                        res.getDimensionPixelSize(R.dimen.seek_thumbnail_height),
+                        res.getInteger(R.integer.seek_thumbnail_cache_kb) * 1024);
+        mPlayerGlue.setSeekProvider(mSeekDataProvider);
+        mPlayerGlue.setSeekEnabled(true);
+    }
+
+    private void releaseSeekDataProvider() {
+        if (mSeekDataProvider != null) {
+            mPlayerGlue.setSeekProvider(null);
+            mSeekDataProvider.release();
+            mSeekDataProvider = null;
+        }
+    }
+
+    private int getCurrentMovieId() {
+        return Integer.parseInt(mPlaylistAdapter.getCurrentItem().getMediaId());
+    }
+
+    /**
+     * Creates a glue for a player and attaches it to the fragment. The glue that was attached
+     * before is detached, which releases its player. The title and subtitle carry over.
+     */
+    private void setPlayerAdapter(MediaPlayerAdapter playerAdapter) {
+        PrimaryPlaybackControlsGlue<MediaPlayerAdapter> glue =
+                new PrimaryPlaybackControlsGlue<>(
+                        getContext(), playerAdapter, mSession.getController());
+        if (mPlayerGlue != null) {
+            releaseSeekDataProvider();
+            mPlayerGlue.removePlayerCallback(resumePlayerCallback);
+            mPlayerGlue.removePlayerCallback(playWhenReadyPlayerCallback);
+            mPlayerGlue.removePlayerCallback(playPausePlayerCallback);
+            mPlayerGlue.removePlayerCallback(lookAheadPlayerCallback);
+            glue.setTitle(mPlayerGlue.getTitle());
+            glue.setSubtitle(mPlayerGlue.getSubtitle());
+        }
+        glue.setProgressListener(progressListener);
+        mPlayerGlue = glue;
+        // A preloaded player reports that it is prepared as soon as it is attached, so the
+        // callbacks are added first. Resuming seeks before playback starts.
+        mPlayerGlue.addPlayerCallback(resumePlayerCallback);
+        mPlayerGlue.addPlayerCallback(playWhenReadyPlayerCallback);
+        mPlayerGlue.addPlayerCallback(playPausePlayerCallback);
+        mPlayerGlue.addPlayerCallback(lookAheadPlayerCallback);
+        mPlayerGlue.setHost(mGlueHost);
+    }
+
+    /**
+     * Checks if the glue is prepared before telling the glue to start playback. A rendition that
+     * takes over from a paused player stays paused.
+     */
+    private class PlayWhenReadyPlayerCallback extends PlaybackGlue.PlayerCallback {
         @Override
         public void onPreparedStateChanged(PlaybackGlue glue) {
             super.onPreparedStateChanged(glue);
             if (glue.isPrepared()) {
-                glue.play();
+                PlaybackStartupTracer.mark(PlaybackStartupTracer.STAGE_PREPARED);
+                if (mPlayWhenReady) {
+                    glue.play();
+                    PlaybackStartupTracer.mark(PlaybackStartupTracer.STAGE_PLAYING);
+                }
             }
         }
     }
@@ -136,35 +599,26 @@ public class PlaybackFragment extends VideoSupportFragment {
      */
     private class MediaSessionCallback extends MediaSessionCompat.Callback {
 
-        private final PlaybackTransportControlGlue<?> mGlue;
-
-        public MediaSessionCallback(PlaybackTransportControlGlue<?> glue) {
-            mGlue = glue;
-        }
-
         @Override
         public void onPlay() {
             Log.d(TAG, "MediaSessionCallback: onPlay()");
-            mGlue.play();
-            updatePlaybackStateToPlaying(
-                    mGlue.getCurrentPosition(), mPlaylistAdapter.getCurrentItem());
+            mPlayerGlue.play();
+            updatePlaybackStateToPlaying(mPlayerGlue.getCurrentPosition());
         }
 
         @Override
         public void onPause() {
             Log.d(TAG, "MediaSessionCallback: onPause()");
-            mGlue.pause();
-            updatePlaybackState(
-                    PlaybackStateCompat.STATE_PAUSED,
-                    mGlue.getCurrentPosition(),
-                    mPlaylistAdapter.getCurrentItem());
+            mPlayerGlue.pause();
+            updatePlaybackState(PlaybackStateCompat.STATE_PAUSED, mPlayerGlue.getCurrentPosition());
         }
 
         @Override
         public void onSeekTo(long position) {
             Log.d(TAG, "MediaSessionCallback: onSeekTo()");
-            mGlue.seekTo(position);
-            updatePlaybackStateToPlaying(position, mPlaylistAdapter.getCurrentItem());
+            cancelCountdown();
+            mPlayerGlue.seekPlayerTo(position);
+            updatePlaybackStateToPlaying(position);
         }
 
         /*
@@ -196,27 +650,55 @@ public class PlaybackFragment extends VideoSupportFragment {
             playAndUpdateMediaSession(mPlaylistAdapter.skipToPreviousItem());
         }
 
+        @Override
+        public void onSetRepeatMode(@PlaybackStateCompat.RepeatMode int repeatMode) {
+            Log.d(TAG, "MediaSessionCallback: onSetRepeatMode(" + repeatMode + ")");
+            mPlaylistAdapter.setRepeatMode(repeatMode);
+            mSession.setRepeatMode(repeatMode);
+            preloadNextItem();
+        }
+
+        @Override
+        public void onSetShuffleMode(@PlaybackStateCompat.ShuffleMode int shuffleMode) {
+            Log.d(TAG, "MediaSessionCallback: onSetShuffleMode(" + shuffleMode + ")");
+            mPlaylistAdapter.setShuffleModeEnabled(
+                    shuffleMode != PlaybackStateCompat.SHUFFLE_MODE_NONE);
+            mSession.setShuffleMode(shuffleMode);
+            // The items around the current one are not the same anymore.
+            mQueueWindowPublisher.invalidate();
+            mQueueWindowPublisher.update();
+            preloadNextItem();
+        }
+
+        @Override
+        public void onSkipToQueueItem(long id) {
+            Log.d(TAG, "MediaSessionCallback: onSkipToQueueItem(" + id + ")");
+            // Queue ids are indices into the playlist, see QueueWindowPublisher. The id comes
+            // from another app, which may hold a queue published before the playlist changed, and
+            // skipToQueueItem would throw for an index outside of it.
+            if (id < 0 || id >= mPlaylistAdapter.size()) {
+                Log.w(TAG, "Ignoring invalid queue id " + id);
+                return;
+            }
+            playAndUpdateMediaSession(mPlaylistAdapter.skipToQueueItem(id));
+        }
+
         private void playAndUpdateMediaSession(MediaDescriptionCompat media) {
+            mSkipStartTime = SystemClock.elapsedRealtime();
             playMedia(media);
-            mSession.setMetadata(mPlaylistAdapter.mapToMetadata(media));
-            updatePlaybackStateToPlaying(0L, media);
+            mSession.setMetadata(mPlaylistAdapter.getCurrentMetadata());
+            mQueueWindowPublisher.update();
+            updatePlaybackStateToPlaying(0L);
         }
 
-        private void updatePlaybackStateToPlaying(
-                long position, MediaDescriptionCompat description) {
-            updatePlaybackState(PlaybackStateCompat.STATE_PLAYING, position, description);
+        private void updatePlaybackStateToPlaying(long position) {
+            updatePlaybackState(PlaybackStateCompat.STATE_PLAYING, position);
         }
 
-        private void updatePlaybackState(
-                @PlaybackStateCompat.State int state,
-                long position,
-                MediaDescriptionCompat description) {
-            PlaybackStateCompat.Builder builder =
-                    new PlaybackStateCompat.Builder()
-                            .setActions(AVAILABLE_MEDIA_ACTIONS)
-                            .setActiveQueueItemId(Long.parseLong(description.getMediaId()))
-                            .setState(state, position, 1.0f);
-            mSession.setPlaybackState(builder.build());
+        private void updatePlaybackState(@PlaybackStateCompat.State int state, long position) {
+            // The queue ids are the indices of the items in the playlist.
+            mPlaybackStatePublisher.publish(
+                    state, position, mPlaylistAdapter.getActiveIndex(), AVAILABLE_MEDIA_ACTIONS);
         }
     }
 }
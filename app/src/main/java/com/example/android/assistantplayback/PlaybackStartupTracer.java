@@ -0,0 +1,204 @@
+/*
+ * Copyright (c) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.assistantplayback;
+
+import android.os.Build;
+import android.os.SystemClock;
+import android.os.Trace;
+import android.util.Log;
+
+/**
+ * Measures how long it takes to go from a request to play a movie to the movie playing. <br>
+ * Each stage of the startup is marked with a monotonic timestamp. When playback starts, the time
+ * spent in each stage is added to a histogram, whose percentiles can be queried to find the
+ * slowest stage. <br>
+ * On API 29 and above, the session is also an async {@link Trace} section, as is the time from
+ * each stage to the next, named after the stage it starts from, so the stages show up in
+ * systrace. The stages are reached in different callbacks, which sync sections cannot span. <br>
+ * A session starts with the search intent from the assistant, or with {@link PlaybackActivity}
+ * when playback is started from the app.
+ */
+public final class PlaybackStartupTracer {
+
+    private static final String TAG = "PlaybackStartupTracer";
+
+    public static final int STAGE_INTENT_RECEIVED = 0;
+    public static final int STAGE_ACTIVITY_CREATED = 1;
+    public static final int STAGE_FRAGMENT_CREATED = 2;
+    public static final int STAGE_DATA_SOURCE_SET = 3;
+    public static final int STAGE_PREPARED = 4;
+    public static final int STAGE_PLAYING = 5;
+
+    private static final String[] STAGE_NAMES = {
+        "IntentReceived",
+        "ActivityCreated",
+        "FragmentCreated",
+        "DataSourceSet",
+        "Prepared",
+        "Playing"
+    };
+    private static final int STAGE_COUNT = STAGE_NAMES.length;
+
+    private static final String SESSION_SECTION_NAME = "PlaybackStartup";
+
+    private static final long BUCKET_WIDTH_MS = 5;
+    private static final int BUCKET_COUNT = 2000;
+
+    // Time at which each stage of the current session was reached, 0 if it was not.
+    private static final long[] sTimestamps = new long[STAGE_COUNT];
+
+    // Time spent reaching each stage from the stage before it, and from the start of a session.
+    private static final LatencyHistogram[] sStageHistograms = new LatencyHistogram[STAGE_COUNT];
+    private static final LatencyHistogram sTotalHistogram =
+            new LatencyHistogram(BUCKET_WIDTH_MS, BUCKET_COUNT);
+
+    private static boolean sActive;
+
+    // Identifies the trace sections of the current session, and the stage whose section is open.
+    private static int sTraceCookie;
+    private static int sTracedStage = -1;
+
+    static {
+        for (int stage = 0; stage < STAGE_COUNT; stage++) {
+            sStageHistograms[stage] = new LatencyHistogram(BUCKET_WIDTH_MS, BUCKET_COUNT);
+        }
+    }
+
+    private PlaybackStartupTracer() {}
+
+    /**
+     * Marks that a stage of the startup was reached. Stages reached outside of a session, for
+     * example when the player prepares the next item of a playlist, are ignored.
+     *
+     * @param stage One of the STAGE constants.
+     */
+    public static synchronized void mark(int stage) {
+        if (stage == STAGE_INTENT_RECEIVED
+                || (stage == STAGE_ACTIVITY_CREATED && (!sActive || sTimestamps[stage] != 0))) {
+            // A session that never reached playback is dropped.
+            startSession();
+        } else if (!sActive) {
+            return;
+        }
+        sTimestamps[stage] = SystemClock.elapsedRealtime();
+        endStageSection();
+        if (stage != STAGE_PLAYING && Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            // Spans until the next stage is reached.
+            Trace.beginAsyncSection(getSectionName(stage), sTraceCookie);
+            sTracedStage = stage;
+        }
+        if (stage == STAGE_PLAYING) {
+            endSession();
+        }
+    }
+
+    /**
+     * Returns a percentile of the time spent reaching a stage from the stage before it.
+     *
+     * @param stage One of the STAGE constants.
+     * @param percentile The percentile, between 0 and 100.
+     * @return The latency in milliseconds, or -1 if no session reached the stage.
+     */
+    public static synchronized long getPercentile(int stage, double percentile) {
+        return sStageHistograms[stage].getPercentile(percentile);
+    }
+
+    /**
+     * Returns a percentile of the time from the start of a session to playback.
+     *
+     * @param percentile The percentile, between 0 and 100.
+     * @return The latency in milliseconds, or -1 if no session completed.
+     */
+    public static synchronized long getTotalPercentile(double percentile) {
+        return sTotalHistogram.getPercentile(percentile);
+    }
+
+    /** Returns the p50, p95 and p99 of every stage and of the whole startup. */
+    public static synchronized String getSummary() {
+        StringBuilder summary = new StringBuilder();
+        for (int stage = 0; stage < STAGE_COUNT; stage++) {
+            if (sStageHistograms[stage].getCount() > 0) {
+                summary.append(STAGE_NAMES[stage])
+                        .append(": ")
+                        .append(sStageHistograms[stage])
+                        .append('\n');
+            }
+        }
+        return summary.append("Total: ").append(sTotalHistogram).toString();
+    }
+
+    private static void startSession() {
+        if (sActive) {
+            endTrace();
+        }
+        sTraceCookie++;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            Trace.beginAsyncSection(SESSION_SECTION_NAME, sTraceCookie);
+        }
+        for (int stage = 0; stage < STAGE_COUNT; stage++) {
+            sTimestamps[stage] = 0;
+        }
+        sActive = true;
+    }
+
+    private static void endSession() {
+        sActive = false;
+        endTrace();
+        long start = 0;
+        long previous = 0;
+        StringBuilder session = new StringBuilder("Startup:");
+        for (int stage = 0; stage < STAGE_COUNT; stage++) {
+            long timestamp = sTimestamps[stage];
+            if (timestamp == 0) {
+                // The session started at a later stage, or the stage was skipped.
+                continue;
+            }
+            if (start == 0) {
+                start = timestamp;
+            } else {
+                sStageHistograms[stage].record(timestamp - previous);
+                session.append(' ')
+                        .append(STAGE_NAMES[stage])
+                        .append('=')
+                        .append(timestamp - previous)
+                        .append("ms");
+            }
+            previous = timestamp;
+        }
+        sTotalHistogram.record(previous - start);
+        Log.d(TAG, session.append(" total=").append(previous - start).append("ms").toString());
+    }
+
+    /** Closes the sections of the current session. */
+    private static void endTrace() {
+        endStageSection();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            Trace.endAsyncSection(SESSION_SECTION_NAME, sTraceCookie);
+        }
+    }
+
+    private static void endStageSection() {
+        if (sTracedStage >= 0 && Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            Trace.endAsyncSection(getSectionName(sTracedStage), sTraceCookie);
+        }
+        sTracedStage = -1;
+    }
+
+    private static String getSectionName(int stage) {
+        return SESSION_SECTION_NAME + ":" + STAGE_NAMES[stage];
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.assistantplayback;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.support.v4.media.session.MediaSessionCompat;
+import android.support.v4.media.session.PlaybackStateCompat;
+
+/**
+ * Publishes playback states to a {@link MediaSessionCompat} without flooding it. <br>
+ * Every published state is an IPC to the system and to the assistant. The first update after a
+ * quiet period is published right away, the updates that follow within the window are coalesced
+ * and only the last one is published when the window ends. An update that the session can already
+ * extrapolate from the last published state, same state and a position within {@link
+ * #POSITION_TOLERANCE_MS} of where playback is expected to be, is dropped. <br>
+ * Must be used from the main thread.
+ */
+public class PlaybackStatePublisher {
+
+    /** How far a position can be from the extrapolated one and still be considered redundant. */
+    static final long POSITION_TOLERANCE_MS = 250;
+
+    private final MediaSessionCompat mSession;
+    private final long mWindowMs;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    private final Runnable mFlushRunnable =
+            new Runnable() {
+                @Override
+                public void run() {
+                    mFlushScheduled = false;
+                    if (mPending != null) {
+                        PlaybackStateCompat pending = mPending;
+                        mPending = null;
+                        publishNow(pending);
+                    }
+                }
+            };
+
+    private PlaybackStateCompat mLastPublished;
+    private PlaybackStateCompat mPending;
+    private boolean mFlushScheduled;
+    private int mPublishedCount;
+    private int mCoalescedCount;
+
+    /**
+     * @param session The session to publish the states to.
+     * @param windowMs Time during which updates are coalesced after a state is published.
+     */
+    public PlaybackStatePublisher(MediaSessionCompat session, long windowMs) {
+        mSession = session;
+        mWindowMs = windowMs;
+    }
+
+    /**
+     * Requests a new playback state to be published.
+     *
+     * @param state The state of playback.
+     * @param position The position of playback when the request is made.
+     * @param activeQueueItemId The id of the playing item.
+     * @param actions The actions available to the session.
+     */
+    public void publish(
+            @PlaybackStateCompat.State int state,
+            long position,
+            long activeQueueItemId,
+            long actions) {
+        // The time of the request is kept so a coalesced state still extrapolates correctly.
+        PlaybackStateCompat playbackState =
+                new PlaybackStateCompat.Builder()
+                        .setActions(actions)
+                        .setActiveQueueItemId(activeQueueItemId)
+                        .setState(state, position, 1.0f, SystemClock.elapsedRealtime())
+                        .build();
+
+        if (mPending != null) {
+            // A newer state supersedes the one waiting for the end of the window.
+            mCoalescedCount++;
+            mPending = null;
+        }
+        if (isRedundant(playbackState)) {
+            mCoalescedCount++;
+            return;
+        }
+        if (mFlushScheduled) {
+            mPending = playbackState;
+        } else {
+            publishNow(playbackState);
+        }
+    }
+
+    /** Publishes the pending state, if any, without waiting for the end of the window. */
+    public void flush() {
+        mHandler.removeCallbacks(mFlushRunnable);
+        mFlushRunnable.run();
+    }
+
+    /** Publishes the pending state, if any, and stops publishing. */
+    public void release() {
+        flush();
+        mHandler.removeCallbacksAndMessages(null);
+    }
+
+    public int getPublishedCount() {
+        return mPublishedCount;
+    }
+
+    public int getCoalescedCount() {
+        return mCoalescedCount;
+    }
+
+    private void publishNow(PlaybackStateCompat playbackState) {
+        mSession.setPlaybackState(playbackState);
+        mLastPublished = playbackState;
+        mPublishedCount++;
+        mFlushScheduled = true;
+        mHandler.postDelayed(mFlushRunnable, mWindowMs);
+    }
+
+    private boolean isRedundant(PlaybackStateCompat playbackState) {
+        PlaybackStateCompat last = mLastPublished;
+        if (last == null
+                || last.getState() != playbackState.getState()
+                || last.getActions() != playbackState.getActions()
+                || last.getActiveQueueItemId() != playbackState.getActiveQueueItemId()
+                || last.getPlaybackSpeed() != playbackState.getPlaybackSpeed()) {
+            return false;
+        }
+        long expectedPosition = last.getPosition();
+        if (last.getState() == PlaybackStateCompat.STATE_PLAYING) {
+            long elapsed =
+                    playbackState.getLastPositionUpdateTime() - last.getLastPositionUpdateTime();
+            expectedPosition += (long) (elapsed * last.getPlaybackSpeed());
+        }
+        return Math.abs(playbackState.getPosition() - expectedPosition) <= POSITION_TOLERANCE_MS;
+    }
+
+    @Override
+    public String toString() {
+        return "PlaybackStatePublisher{published="
+                + mPublishedCount
+                + ", coalesced="
+                + mCoalescedCount
+                + "}";
+    }
+}
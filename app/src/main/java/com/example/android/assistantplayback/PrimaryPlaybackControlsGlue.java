@@ -17,6 +17,7 @@
 package com.example.android.assistantplayback;
 
 import android.content.Context;
+import android.os.Handler;
 import android.support.v17.leanback.media.PlaybackTransportControlGlue;
 import android.support.v17.leanback.media.PlayerAdapter;
 import android.support.v17.leanback.widget.Action;
@@ -38,12 +39,38 @@ import java.util.concurrent.TimeUnit;
  * </ul>
  *
  * Note that the superclass, {@link PlaybackTransportControlGlue}, manages the playback controls
- * row.
+ * row. <br>
+ * <br>
+ * Rewind and fast forward scrub: repeated presses in the same direction jump further each time,
+ * the target position is shown on the controls row, and a single seek is sent to the media session
+ * once the user stops pressing. <br>
+ * <br>
+ * Seeks from the seek bar are sent to the media session as well. The media session callback
+ * moves the player itself with {@link #seekPlayerTo(long)}.
  */
 public class PrimaryPlaybackControlsGlue<T extends PlayerAdapter>
         extends PlaybackTransportControlGlue<T> {
 
-    private static final long TEN_SECONDS = TimeUnit.SECONDS.toMillis(10);
+    /** Receives the position of playback as it progresses. */
+    public interface ProgressListener {
+
+        /**
+         * Called when the position of playback changes.
+         *
+         * @param position The position in milliseconds.
+         * @param duration The duration of the media in milliseconds, or -1 if unknown.
+         */
+        void onProgressUpdated(long position, long duration);
+    }
+
+    // Jump of a press, the next one is used after SCRUB_PRESSES_PER_STEP presses.
+    private static final long[] SCRUB_STEPS = {
+        TimeUnit.SECONDS.toMillis(10), TimeUnit.SECONDS.toMillis(30), TimeUnit.MINUTES.toMillis(2)
+    };
+    private static final int SCRUB_PRESSES_PER_STEP = 3;
+
+    // Time without a press after which the seek is sent.
+    private static final long SCRUB_DEBOUNCE_MS = 600;
 
     private final PlaybackControlsRow.SkipPreviousAction mSkipPreviousAction;
     private final PlaybackControlsRow.SkipNextAction mSkipNextAction;
@@ -52,6 +79,27 @@ public class PrimaryPlaybackControlsGlue<T extends PlayerAdapter>
 
     private final MediaControllerCompat.TransportControls mMediaSessionTransportControls;
 
+    private final Handler mHandler = new Handler();
+    private final Runnable mSeekRunnable =
+            new Runnable() {
+                @Override
+                public void run() {
+                    long target = mScrubTarget;
+                    mScrubTarget = -1;
+                    mScrubPresses = 0;
+                    // The MediaSession callback in PlaybackFragment will be triggered which will
+                    // sync the glue (this) with media session.
+                    mMediaSessionTransportControls.seekTo(target);
+                }
+            };
+
+    private ProgressListener mProgressListener;
+
+    // Position the user is scrubbing to, -1 when not scrubbing.
+    private long mScrubTarget = -1;
+    private int mScrubDirection;
+    private int mScrubPresses;
+
     public PrimaryPlaybackControlsGlue(
             Context context, T adapter, MediaControllerCompat mediaController) {
         super(context, adapter);
@@ -63,6 +111,23 @@ public class PrimaryPlaybackControlsGlue<T extends PlayerAdapter>
         mRewindAction = new PlaybackControlsRow.RewindAction(context);
     }
 
+    public void setProgressListener(ProgressListener listener) {
+        mProgressListener = listener;
+    }
+
+    @Override
+    protected void onUpdateProgress() {
+        if (mScrubTarget == -1) {
+            super.onUpdateProgress();
+        } else if (getControlsRow() != null) {
+            // Keeps showing the target instead of the position of the player.
+            getControlsRow().setCurrentPosition(mScrubTarget);
+        }
+        if (mProgressListener != null) {
+            mProgressListener.onProgressUpdated(getCurrentPosition(), getDuration());
+        }
+    }
+
     @Override
     protected void onCreatePrimaryActions(ArrayObjectAdapter primaryActionsAdapter) {
         // Order matters, super.onCreatePrimaryActions() will create the play / pause action.
@@ -88,6 +153,24 @@ public class PrimaryPlaybackControlsGlue<T extends PlayerAdapter>
         }
     }
 
+    /**
+     * Sends the seek to the media session instead of the player. Leanback calls this when the
+     * user picks a position on the seek bar.
+     */
+    @Override
+    public void seekTo(long position) {
+        mMediaSessionTransportControls.seekTo(position);
+    }
+
+    /**
+     * Moves the player to a position, without going through the media session.
+     *
+     * @param position The position in milliseconds.
+     */
+    public void seekPlayerTo(long position) {
+        super.seekTo(position);
+    }
+
     @Override
     public void next() {
         mMediaSessionTransportControls.skipToNext();
@@ -98,23 +181,51 @@ public class PrimaryPlaybackControlsGlue<T extends PlayerAdapter>
         mMediaSessionTransportControls.skipToPrevious();
     }
 
-    /** Skips backwards 10 seconds. */
+    @Override
+    protected void onDetachedFromHost() {
+        // The player goes away with the host, a pending seek would apply to the next one.
+        mHandler.removeCallbacks(mSeekRunnable);
+        mScrubTarget = -1;
+        mScrubPresses = 0;
+        super.onDetachedFromHost();
+    }
+
+    /** Scrubs backwards, from 10 seconds up to 2 minutes per press. */
     private void rewind() {
-        long newPosition = getCurrentPosition() - TEN_SECONDS;
-        newPosition = (newPosition < 0) ? 0 : newPosition;
-        // The MediaSession callback in PlaybackFragment will be triggered which will sync the glue
-        // (this) with media session.
-        mMediaSessionTransportControls.seekTo(newPosition);
+        scrub(-1);
     }
 
-    /** Skips forward 10 seconds. */
+    /** Scrubs forward, from 10 seconds up to 2 minutes per press. */
     private void fastForward() {
         if (getDuration() > -1) {
-            long newPosition = getCurrentPosition() + TEN_SECONDS;
-            newPosition = (newPosition > getDuration()) ? getDuration() : newPosition;
-            // The MediaSession callback in PlaybackFragment will be triggered which will sync the
-            // glue (this) with media session.
-            mMediaSessionTransportControls.seekTo(newPosition);
+            scrub(1);
+        }
+    }
+
+    private void scrub(int direction) {
+        if (mScrubTarget == -1) {
+            mScrubTarget = getCurrentPosition();
+            mScrubPresses = 0;
+        } else if (direction != mScrubDirection) {
+            // Changing direction starts over from the smallest step, from where the user is.
+            mScrubPresses = 0;
+        }
+        mScrubDirection = direction;
+
+        int step = Math.min(mScrubPresses / SCRUB_PRESSES_PER_STEP, SCRUB_STEPS.length - 1);
+        mScrubPresses++;
+        long target = mScrubTarget + direction * SCRUB_STEPS[step];
+        if (target < 0) {
+            target = 0;
+        } else if (getDuration() > -1 && target > getDuration()) {
+            target = getDuration();
+        }
+        mScrubTarget = target;
+
+        if (getControlsRow() != null) {
+            getControlsRow().setCurrentPosition(target);
         }
+        mHandler.removeCallbacks(mSeekRunnable);
+        mHandler.postDelayed(mSeekRunnable, SCRUB_DEBOUNCE_MS);
     }
 }
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.assistantplayback;
+
+import android.support.v4.media.session.MediaSessionCompat;
+import android.util.Log;
+
+import com.example.android.assistantplayback.playlist.ListPlaylistAdapter;
+
+import java.util.List;
+
+/**
+ * Publishes a window of a playlist as the queue of a {@link MediaSessionCompat}. <br>
+ * The whole queue is sent to the system and to the assistant every time it is published, so a
+ * large playlist is published a window at a time: a few items before the current one and the
+ * items that follow. The window only moves when the current item gets close to one of its edges.
+ */
+class QueueWindowPublisher {
+
+    private static final String TAG = "QueueWindowPublisher";
+
+    private final MediaSessionCompat mSession;
+    private final ListPlaylistAdapter<?> mPlaylistAdapter;
+    private final int mWindowSize;
+    private final int mMargin;
+
+    // Positions in the play order of the published window, end is exclusive.
+    private int mWindowStart = -1;
+    private int mWindowEnd = -1;
+
+    /**
+     * @param session The session to publish the queue to.
+     * @param playlistAdapter The playlist to publish.
+     * @param windowSize Maximum number of items in the queue.
+     */
+    QueueWindowPublisher(
+            MediaSessionCompat session, ListPlaylistAdapter<?> playlistAdapter, int windowSize) {
+        mSession = session;
+        mPlaylistAdapter = playlistAdapter;
+        mWindowSize = windowSize;
+        mMargin = windowSize / 4;
+    }
+
+    /** Publishes a new window if the current item moved too close to the edge of the last one. */
+    void update() {
+        int position = mPlaylistAdapter.getActivePosition();
+        int size = mPlaylistAdapter.size();
+        boolean nearStart = position < mWindowStart + mMargin && mWindowStart > 0;
+        boolean nearEnd = position >= mWindowEnd - mMargin && mWindowEnd < size;
+        if (mWindowStart != -1
+                && position >= mWindowStart
+                && position < mWindowEnd
+                && !nearStart
+                && !nearEnd) {
+            return;
+        }
+
+        int start = Math.max(0, Math.min(position - mMargin, size - mWindowSize));
+        List<MediaSessionCompat.QueueItem> queue =
+                mPlaylistAdapter.getQueueItems(start, mWindowSize);
+        mSession.setQueue(queue);
+        mWindowStart = start;
+        mWindowEnd = start + queue.size();
+        Log.d(TAG, "Published queue [" + mWindowStart + ", " + mWindowEnd + ") of " + size);
+    }
+
+    /** Forgets the published window, the next update publishes a new one. */
+    void invalidate() {
+        mWindowStart = -1;
+        mWindowEnd = -1;
+    }
+}
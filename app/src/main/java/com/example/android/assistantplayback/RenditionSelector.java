@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.assistantplayback;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.example.android.assistantplayback.model.Rendition;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Picks the rendition of a movie to play from the measured network throughput. <br>
+ * Until throughput has been measured, the lowest bitrate is picked so the first frame shows up
+ * quickly. Throughput is measured by downloading the beginning of a rendition with a range request
+ * in the background, and every measurement is folded into an exponentially weighted moving
+ * average. The highest rendition whose bitrate fits in a fraction of that estimate is picked. The
+ * estimate is shared by the whole app, so later movies start at the right quality.
+ */
+public class RenditionSelector {
+
+    /** Receives the result of a throughput measurement on the main thread. */
+    public interface Callback {
+
+        /**
+         * Called when a measurement is done.
+         *
+         * @param estimate The throughput estimate in bits per second, or -1 if unknown.
+         */
+        void onThroughputMeasured(long estimate);
+    }
+
+    private static final String TAG = "RenditionSelector";
+
+    // Weight of a new measurement in the average.
+    private static final double SAMPLE_WEIGHT = 0.3;
+
+    // Share of the throughput a rendition may use, the rest absorbs variations.
+    private static final double BANDWIDTH_FRACTION = 0.75;
+
+    private static final int PROBE_BYTES = 256 * 1024;
+    private static final int TIMEOUT_MS = 5000;
+
+    private static RenditionSelector sInstance;
+
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    private long mEstimate = -1;
+
+    public static synchronized RenditionSelector getInstance() {
+        if (sInstance == null) {
+            sInstance = new RenditionSelector();
+        }
+        return sInstance;
+    }
+
+    /**
+     * Picks the rendition to play.
+     *
+     * @param renditions Renditions sorted from the lowest to the highest bitrate, not empty.
+     * @return The lowest rendition if throughput is unknown, otherwise the highest one that fits.
+     */
+    public synchronized Rendition select(List<Rendition> renditions) {
+        Rendition selected = renditions.get(0);
+        if (mEstimate < 0) {
+            return selected;
+        }
+        long budget = (long) (mEstimate * BANDWIDTH_FRACTION);
+        for (int i = 1; i < renditions.size(); i++) {
+            if (renditions.get(i).getBitrate() <= budget) {
+                selected = renditions.get(i);
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Adds a measurement to the throughput estimate.
+     *
+     * @param bytes Number of bytes transferred.
+     * @param elapsedMs Time the transfer took in milliseconds.
+     */
+    public synchronized void addSample(long bytes, long elapsedMs) {
+        if (bytes <= 0 || elapsedMs <= 0) {
+            return;
+        }
+        long throughput = bytes * 8 * 1000 / elapsedMs;
+        mEstimate =
+                mEstimate < 0
+                        ? throughput
+                        : (long) (SAMPLE_WEIGHT * throughput + (1 - SAMPLE_WEIGHT) * mEstimate);
+        Log.d(TAG, "Measured " + throughput / 1000 + "kbps, estimate " + mEstimate / 1000 + "kbps");
+    }
+
+    /** Returns the throughput estimate in bits per second, or -1 if nothing was measured. */
+    public synchronized long getEstimate() {
+        return mEstimate;
+    }
+
+    /**
+     * Measures throughput by downloading the beginning of a video in the background.
+     *
+     * @param url Url of the video.
+     * @param callback Receives the new estimate on the main thread.
+     */
+    public void probe(final String url, final Callback callback) {
+        mExecutor.execute(
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        measure(url);
+                        final long estimate = getEstimate();
+                        mMainHandler.post(
+                                new Runnable() {
+                                    @Override
+                                    public void run() {
+                                        callback.onThroughputMeasured(estimate);
+                                    }
+                                });
+                    }
+                });
+    }
+
+    /**
+     * Measures throughput on the calling thread and adds it to the estimate. The transfer is timed
+     * with {@link System#nanoTime()}, which is monotonic on every platform.
+     *
+     * @param url Url of the video.
+     */
+    void measure(String url) {
+        HttpURLConnection connection = null;
+        try {
+            connection = (HttpURLConnection) new URL(url).openConnection();
+            connection.setConnectTimeout(TIMEOUT_MS);
+            connection.setReadTimeout(TIMEOUT_MS);
+            connection.setRequestProperty("Range", "bytes=0-" + (PROBE_BYTES - 1));
+            InputStream in = connection.getInputStream();
+            // Starts timing at the first byte, connection setup is not throughput.
+            long start = System.nanoTime();
+            byte[] buffer = new byte[16 * 1024];
+            long total = 0;
+            int read;
+            while (total < PROBE_BYTES && (read = in.read(buffer)) != -1) {
+                total += read;
+            }
+            addSample(total, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (IOException e) {
+            Log.w(TAG, "Could not measure throughput with " + url, e);
+        } finally {
+            if (connection != null) {
+                connection.disconnect();
+            }
+        }
+    }
+}
@@ -21,9 +21,9 @@ import android.net.Uri;
 import android.os.Bundle;
 import android.support.annotation.Nullable;
 import android.util.Log;
+import android.widget.Toast;
 
 import com.example.android.assistantplayback.data.MockDatabase;
-import com.example.android.assistantplayback.model.Movie;
 
 import static android.support.v4.content.IntentCompat.EXTRA_START_PLAYBACK;
 
@@ -46,15 +46,22 @@ public class SearchableActivity extends Activity {
         if (getIntent() != null && getIntent().getData() != null) {
             Uri uri = getIntent().getData();
             int id = Integer.valueOf(uri.getLastPathSegment());
+            if (MockDatabase.getMovieWithId(id) == null) {
+                // The search results were built before the movie was deleted.
+                Log.w(TAG, "Movie " + id + " is not in the catalog anymore.");
+                Toast.makeText(this, R.string.movie_unavailable, Toast.LENGTH_SHORT).show();
+                finish();
+                return;
+            }
 
             boolean startPlayback = getIntent().getBooleanExtra(EXTRA_START_PLAYBACK, false);
             Log.d(TAG, "Should start playback? " + (startPlayback ? "yes" : "no"));
 
             if (startPlayback) {
+                PlaybackStartupTracer.mark(PlaybackStartupTracer.STAGE_INTENT_RECEIVED);
                 startActivity(PlaybackActivity.createIntent(this, id));
             } else {
-                Movie movie = MockDatabase.findMovieWithId(id);
-                startActivity(VideoDetailsActivity.createIntent(this, movie));
+                startActivity(VideoDetailsActivity.createIntent(this, id));
             }
         }
         finish();
@@ -17,21 +17,48 @@
 package com.example.android.assistantplayback;
 
 import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
 import android.support.v17.leanback.widget.ImageCardView;
 import android.support.v17.leanback.widget.Presenter;
+import android.util.Log;
 import android.view.ContextThemeWrapper;
 import android.view.ViewGroup;
 
+import com.bumptech.glide.BitmapRequestBuilder;
 import com.bumptech.glide.Glide;
 import com.example.android.assistantplayback.model.Movie;
 
-/** Renders movies onto cards. */
+/**
+ * Renders movies onto cards. Placeholders of {@link PagedMovieAdapter} get an empty card. <br>
+ * Card images are decoded at the exact pixel size of the card, and {@link #preload(Movie)} decodes
+ * them ahead of time with the same request so that the card finds them in the memory cache.
+ */
 public class VideoCardViewPresenter extends Presenter {
 
+    private static final String TAG = "VideoCardViewPresenter";
+
+    // Glide decodes opaque images as RGB_565 by default.
+    private static final int BYTES_PER_PIXEL = 2;
+
     private final Context mContext;
+    private final int mImageWidth;
+    private final int mImageHeight;
 
     public VideoCardViewPresenter(Context context) {
         mContext = new ContextThemeWrapper(context, R.style.DefaultCardTheme);
+        Resources res = context.getResources();
+        mImageWidth = res.getDimensionPixelSize(R.dimen.default_image_card_width);
+        mImageHeight = res.getDimensionPixelSize(R.dimen.default_image_card_height);
+        Log.d(
+                TAG,
+                "Card images decode at "
+                        + mImageWidth
+                        + "x"
+                        + mImageHeight
+                        + ", "
+                        + getDecodedBytesPerCard() / 1024
+                        + "KB per card");
     }
 
     @Override
@@ -42,15 +69,50 @@ public class VideoCardViewPresenter extends Presenter {
 
     @Override
     public void onBindViewHolder(ViewHolder viewHolder, Object item) {
-        Movie movie = (Movie) item;
         ImageCardView view = (ImageCardView) viewHolder.view;
+        if (!(item instanceof Movie)) {
+            view.setTitleText(null);
+            view.setContentText(null);
+            Glide.clear(view.getMainImageView());
+            view.setMainImage(null);
+            return;
+        }
+        Movie movie = (Movie) item;
 
         view.setTitleText(movie.getTitle());
         view.setContentText(movie.getDescription());
 
-        Glide.with(mContext).load(movie.getCardImage()).asBitmap().into(view.getMainImageView());
+        loadCardImage(movie).into(view.getMainImageView());
     }
 
     @Override
-    public void onUnbindViewHolder(ViewHolder viewHolder) {}
+    public void onUnbindViewHolder(ViewHolder viewHolder) {
+        ImageCardView view = (ImageCardView) viewHolder.view;
+        // Cancels a pending load and releases the bitmap back to Glide.
+        Glide.clear(view.getMainImageView());
+        view.setMainImage(null);
+    }
+
+    /**
+     * Decodes the card image of a movie into the memory cache before its card is bound.
+     *
+     * @param movie The movie whose card will be shown soon.
+     */
+    public void preload(Movie movie) {
+        loadCardImage(movie).preload(mImageWidth, mImageHeight);
+    }
+
+    /**
+     * Returns the memory taken by the decoded image of one card.
+     *
+     * @return Size of a decoded card image in bytes.
+     */
+    public int getDecodedBytesPerCard() {
+        return mImageWidth * mImageHeight * BYTES_PER_PIXEL;
+    }
+
+    private BitmapRequestBuilder<String, Bitmap> loadCardImage(Movie movie) {
+        return ImageMemoryManager.cardImage(
+                mContext, movie.getCardImage(), mImageWidth, mImageHeight);
+    }
 }
@@ -22,14 +22,20 @@ import android.os.Bundle;
 import android.support.annotation.Nullable;
 import android.support.v4.app.FragmentActivity;
 
-import com.example.android.assistantplayback.model.Movie;
-
 /** Loads {@link VideoDetailsFragment}. */
 public class VideoDetailsActivity extends FragmentActivity {
 
-    public static Intent createIntent(Context context, Movie movie) {
+    /**
+     * Creates an intent that will show the details of a movie. Only the id of the movie is passed
+     * along, the details screen looks the movie up in the catalog.
+     *
+     * @param context Used to create an {@link Intent}.
+     * @param movieId The id of the movie to display.
+     * @return An intent that can be started to show the details of a movie.
+     */
+    public static Intent createIntent(Context context, int movieId) {
         Intent intent = new Intent(context, VideoDetailsActivity.class);
-        intent.putExtra(VideoDetailsFragment.EXTRA_MOVIE, movie);
+        intent.putExtra(VideoDetailsFragment.EXTRA_MOVIE_ID, movieId);
         return intent;
     }
 
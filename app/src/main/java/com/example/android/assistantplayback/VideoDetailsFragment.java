@@ -33,15 +33,17 @@ import android.support.v17.leanback.widget.OnActionClickedListener;
 import android.support.v17.leanback.widget.Presenter;
 import android.support.v17.leanback.widget.SparseArrayObjectAdapter;
 import android.support.v4.content.ContextCompat;
+import android.util.DisplayMetrics;
+import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.ImageView;
 import android.widget.Toast;
 
-import com.bumptech.glide.Glide;
 import com.bumptech.glide.request.animation.GlideAnimation;
 import com.bumptech.glide.request.target.SimpleTarget;
+import com.example.android.assistantplayback.data.MockDatabase;
 import com.example.android.assistantplayback.model.Movie;
 
 /**
@@ -49,7 +51,12 @@ import com.example.android.assistantplayback.model.Movie;
  */
 public class VideoDetailsFragment extends DetailsSupportFragment {
 
-    public static final String EXTRA_MOVIE = "com.example.android.assistantplayback.extra.MOVIE";
+    private static final String TAG = "VideoDetailsFragment";
+
+    public static final String EXTRA_MOVIE_ID =
+            "com.example.android.assistantplayback.extra.MOVIE_ID";
+
+    private static final String STATE_MOVIE_ID = "movie_id";
 
     private static final int ACTION_WATCH = 1;
     private static final int ACTION_RENT = 2;
@@ -63,7 +70,13 @@ public class VideoDetailsFragment extends DetailsSupportFragment {
     public void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
 
-        mMovie = getActivity().getIntent().getParcelableExtra(EXTRA_MOVIE);
+        mMovie = resolveMovie(savedInstanceState);
+        if (mMovie == null) {
+            // The movie was deleted since the grid or the search results showed it.
+            Toast.makeText(getActivity(), R.string.movie_unavailable, Toast.LENGTH_SHORT).show();
+            getActivity().finish();
+            return;
+        }
         mDetailsBackground = new DetailsSupportFragmentBackgroundController(this);
 
         setupAdapter();
@@ -71,6 +84,36 @@ public class VideoDetailsFragment extends DetailsSupportFragment {
         initializeBackground(mMovie);
     }
 
+    @Override
+    public void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+        // Only the id is kept, the movie is looked up again in the catalog when restored.
+        if (mMovie != null) {
+            outState.putInt(STATE_MOVIE_ID, mMovie.getId());
+        }
+    }
+
+    /**
+     * Finds the movie to display. The intent and the saved state only carry its id, the movie
+     * itself is looked up in the catalog, so a recreated fragment shows the latest version of it.
+     *
+     * @return The movie, or null if it is not in the catalog anymore.
+     */
+    private Movie resolveMovie(Bundle savedInstanceState) {
+        int movieId =
+                savedInstanceState != null
+                        ? savedInstanceState.getInt(STATE_MOVIE_ID, -1)
+                        : getActivity().getIntent().getIntExtra(EXTRA_MOVIE_ID, -1);
+        if (movieId == -1) {
+            throw new IllegalArgumentException("Invalid movieId " + movieId);
+        }
+        Movie movie = MockDatabase.getMovieWithId(movieId);
+        if (movie == null) {
+            Log.w(TAG, "Movie " + movieId + " is not in the catalog anymore.");
+        }
+        return movie;
+    }
+
     private void setupAdapter() {
         FullWidthDetailsOverviewRowPresenter detailsPresenter =
                 new FullWidthDetailsOverviewRowPresenter(
@@ -104,13 +147,12 @@ public class VideoDetailsFragment extends DetailsSupportFragment {
     private void setupDetailsOverviewRow() {
         final DetailsOverviewRow row = new DetailsOverviewRow(mMovie);
 
-        Glide.with(this)
-                .load(mMovie.getCardImage())
-                .asBitmap()
-                .dontAnimate()
-                .error(R.drawable.assistant_tv_banner)
+        Resources res = getResources();
+        ImageMemoryManager.detailsLogo(this, mMovie.getCardImage())
                 .into(
-                        new SimpleTarget<Bitmap>() {
+                        new SimpleTarget<Bitmap>(
+                                res.getDimensionPixelSize(R.dimen.detail_thumb_width),
+                                res.getDimensionPixelSize(R.dimen.detail_thumb_height)) {
                             @Override
                             public void onResourceReady(
                                     final Bitmap resource, GlideAnimation glideAnimation) {
@@ -141,13 +183,10 @@ public class VideoDetailsFragment extends DetailsSupportFragment {
 
     private void initializeBackground(Movie movie) {
         mDetailsBackground.enableParallax();
-        Glide.with(getActivity())
-                .load(movie.getBackgroundImage())
-                .asBitmap()
-                .centerCrop()
-                .error(R.drawable.assistant_tv_banner)
+        DisplayMetrics metrics = getResources().getDisplayMetrics();
+        ImageMemoryManager.background(this, movie.getBackgroundImage())
                 .into(
-                        new SimpleTarget<Bitmap>() {
+                        new SimpleTarget<Bitmap>(metrics.widthPixels, metrics.heightPixels) {
                             @Override
                             public void onResourceReady(
                                     Bitmap bitmap, GlideAnimation<? super Bitmap> glideAnimation) {
@@ -0,0 +1,230 @@
+/*
+ * Copyright (c) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.assistantplayback;
+
+import android.content.ContentResolver;
+import android.graphics.Bitmap;
+import android.media.MediaMetadataRetriever;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.v17.leanback.widget.PlaybackSeekDataProvider;
+import android.util.Log;
+import android.util.LruCache;
+import android.util.SparseArray;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Provides the thumbnails shown while seeking through a video. <br>
+ * Frames are extracted from the video with {@link MediaMetadataRetriever} on a background thread
+ * and scaled down to the size of a thumbnail. Requests are served in order, but a request that is
+ * more than a few thumbnails away from the latest one is skipped since the user has already
+ * scrubbed past it. Thumbnails are kept in a cache bounded in bytes. <br>
+ * Only local files are supported, see {@link #supports(Uri)}: extracting frames from a remote
+ * video would fetch it over the network for every thumbnail.
+ */
+class VideoFrameSeekDataProvider extends PlaybackSeekDataProvider {
+
+    private static final String TAG = "VideoFrameSeekData";
+
+    // How far from the latest request a thumbnail can be and still be worth extracting.
+    private static final int NEARBY_THUMBNAILS = 3;
+
+    private final String mVideoPath;
+    private final long[] mSeekPositions;
+    private final int mThumbnailWidth;
+    private final int mThumbnailHeight;
+    private final LruCache<Integer, Bitmap> mCache;
+    private final SparseArray<ResultCallback> mPendingCallbacks = new SparseArray<>();
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    private volatile int mLatestRequest;
+    private volatile boolean mReleased;
+
+    // Only used on the executor thread.
+    private MediaMetadataRetriever mRetriever;
+
+    /**
+     * Checks whether frames can be extracted from a video without going through the network.
+     *
+     * @param videoUri Uri of the video.
+     * @return True for a file uri or a path.
+     */
+    static boolean supports(Uri videoUri) {
+        String scheme = videoUri.getScheme();
+        return (scheme == null || ContentResolver.SCHEME_FILE.equals(scheme))
+                && videoUri.getPath() != null;
+    }
+
+    /**
+     * @param videoUri Uri of the video, which must be {@link #supports(Uri) supported}.
+     * @param durationMs Duration of the video in milliseconds.
+     * @param intervalMs Time between two thumbnails in milliseconds.
+     * @param thumbnailWidth Width of a thumbnail in pixels.
+     * @param thumbnailHeight Height of a thumbnail in pixels.
+     * @param cacheSizeBytes Maximum number of bytes used by the cached thumbnails.
+     */
+    VideoFrameSeekDataProvider(
+            Uri videoUri,
+            long durationMs,
+            long intervalMs,
+            int thumbnailWidth,
+            int thumbnailHeight,
+            int cacheSizeBytes) {
+        if (!supports(videoUri)) {
+            throw new IllegalArgumentException("Not a local video: " + videoUri);
+        }
+        mVideoPath = videoUri.getPath();
+        mThumbnailWidth = thumbnailWidth;
+        mThumbnailHeight = thumbnailHeight;
+        mSeekPositions = new long[(int) (durationMs / intervalMs) + 1];
+        for (int i = 0; i < mSeekPositions.length; i++) {
+            mSeekPositions[i] = i * intervalMs;
+        }
+        mCache =
+                new LruCache<Integer, Bitmap>(cacheSizeBytes) {
+                    @Override
+                    protected int sizeOf(Integer index, Bitmap bitmap) {
+                        return bitmap.getByteCount();
+                    }
+                };
+    }
+
+    @Override
+    public long[] getSeekPositions() {
+        return mSeekPositions;
+    }
+
+    @Override
+    public void getThumbnail(final int index, ResultCallback callback) {
+        if (mReleased) {
+            return;
+        }
+        Bitmap bitmap = mCache.get(index);
+        if (bitmap != null) {
+            callback.onThumbnailLoaded(bitmap, index);
+            return;
+        }
+        mLatestRequest = index;
+        if (mPendingCallbacks.get(index) != null) {
+            // Already being extracted, only the callback changes.
+            mPendingCallbacks.put(index, callback);
+            return;
+        }
+        mPendingCallbacks.put(index, callback);
+        mExecutor.execute(
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        final Bitmap thumbnail =
+                                mReleased || Math.abs(index - mLatestRequest) > NEARBY_THUMBNAILS
+                                        ? null
+                                        : extractThumbnail(mSeekPositions[index]);
+                        mMainHandler.post(
+                                new Runnable() {
+                                    @Override
+                                    public void run() {
+                                        deliver(index, thumbnail);
+                                    }
+                                });
+                    }
+                });
+    }
+
+    @Override
+    public void reset() {
+        // Seeking is over, the thumbnails that are still loading are not needed anymore.
+        mPendingCallbacks.clear();
+    }
+
+    /**
+     * Stops extracting thumbnails and releases the retriever and the cache. Thumbnails extracted
+     * after this are dropped instead of being delivered.
+     */
+    void release() {
+        mReleased = true;
+        mPendingCallbacks.clear();
+        mMainHandler.removeCallbacksAndMessages(null);
+        mExecutor.execute(
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        if (mRetriever != null) {
+                            mRetriever.release();
+                            mRetriever = null;
+                        }
+                    }
+                });
+        mExecutor.shutdown();
+        mCache.evictAll();
+    }
+
+    private void deliver(int index, Bitmap thumbnail) {
+        if (mReleased) {
+            // The extraction finished after release() cleared the queue of the main thread.
+            if (thumbnail != null) {
+                thumbnail.recycle();
+            }
+            return;
+        }
+        ResultCallback callback = mPendingCallbacks.get(index);
+        mPendingCallbacks.remove(index);
+        if (thumbnail == null) {
+            return;
+        }
+        mCache.put(index, thumbnail);
+        if (callback != null) {
+            callback.onThumbnailLoaded(thumbnail, index);
+        }
+    }
+
+    /** Runs on the executor thread. */
+    private Bitmap extractThumbnail(long positionMs) {
+        try {
+            if (mRetriever == null) {
+                MediaMetadataRetriever retriever = new MediaMetadataRetriever();
+                try {
+                    retriever.setDataSource(mVideoPath);
+                } catch (RuntimeException e) {
+                    retriever.release();
+                    throw e;
+                }
+                mRetriever = retriever;
+            }
+            Bitmap frame =
+                    mRetriever.getFrameAtTime(
+                            TimeUnit.MILLISECONDS.toMicros(positionMs),
+                            MediaMetadataRetriever.OPTION_CLOSEST_SYNC);
+            if (frame == null) {
+                return null;
+            }
+            Bitmap thumbnail =
+                    Bitmap.createScaledBitmap(frame, mThumbnailWidth, mThumbnailHeight, true);
+            if (thumbnail != frame) {
+                frame.recycle();
+            }
+            return thumbnail;
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Could not extract frame at " + positionMs + "ms", e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.assistantplayback.data;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import com.example.android.assistantplayback.model.Movie;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Loads ranges of the movie catalog on a background thread and delivers them to the main thread in
+ * batches, so building a large catalog never blocks the first frame. A loader can be cancelled,
+ * after which no more batches are delivered. <br>
+ * The movies are read from the {@link MovieCatalogStore} when one is given, so only the requested
+ * range is read from disk, otherwise from {@link MockDatabase}.
+ */
+public class CatalogLoader {
+
+    /** Receives the movies on the main thread. */
+    public interface Callback {
+
+        /**
+         * Called for every batch of movies, in catalog order. An empty batch means that the range
+         * starts past the end of the catalog.
+         *
+         * @param start Index of the first movie of the batch in the catalog.
+         * @param movies The next movies of the catalog.
+         */
+        void onMoviesLoaded(int start, List<Movie> movies);
+    }
+
+    private final int mBatchSize;
+    private final MovieCatalogStore mStore;
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    private volatile boolean mCancelled;
+
+    /**
+     * @param batchSize Maximum number of movies delivered at once.
+     * @param store Store to read the movies from, or null to read them from {@link MockDatabase}.
+     */
+    public CatalogLoader(int batchSize, MovieCatalogStore store) {
+        mBatchSize = batchSize;
+        mStore = store;
+    }
+
+    /**
+     * Starts loading a range of the catalog.
+     *
+     * @param start Index of the first movie to load.
+     * @param count Maximum number of movies to load.
+     * @param callback Receives the batches of movies on the main thread.
+     */
+    public void load(final int start, final int count, final Callback callback) {
+        mExecutor.execute(
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        int end = Math.min(start + count, getMovieCount());
+                        if (start >= end) {
+                            // Let the caller know it reached the end of the catalog.
+                            deliver(callback, start, Collections.<Movie>emptyList());
+                            return;
+                        }
+                        int batchStart = start;
+                        while (batchStart < end && !mCancelled) {
+                            int batchCount = Math.min(mBatchSize, end - batchStart);
+                            deliver(callback, batchStart, getMovies(batchStart, batchCount));
+                            batchStart += batchCount;
+                        }
+                    }
+                });
+    }
+
+    /** Stops loading. Batches that have not been delivered yet are dropped. */
+    public void cancel() {
+        mCancelled = true;
+        mExecutor.shutdownNow();
+        mMainHandler.removeCallbacksAndMessages(null);
+    }
+
+    private int getMovieCount() {
+        return mStore != null ? mStore.getMovieCount() : MockDatabase.getMovieCount();
+    }
+
+    private List<Movie> getMovies(int start, int count) {
+        return mStore != null
+                ? mStore.getMovies(start, count)
+                : MockDatabase.getMovies(start, count);
+    }
+
+    private void deliver(final Callback callback, final int start, final List<Movie> movies) {
+        mMainHandler.post(
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        if (!mCancelled) {
+                            callback.onMoviesLoaded(start, movies);
+                        }
+                    }
+                });
+    }
+}
@@ -0,0 +1,436 @@
+/*
+ * Copyright (c) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.assistantplayback.data;
+
+import com.example.android.assistantplayback.model.Movie;
+import com.example.android.assistantplayback.model.TextNormalizer;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Typo tolerant, ranked index over the words of the titles and descriptions of movies. <br>
+ * Voice recognition often gets a word slightly wrong ("jurasic park"), which a substring search
+ * cannot match. Every distinct word of the catalog is kept in a BK-tree, so the words within a
+ * small edit distance of a query word are found without comparing it to the whole dictionary.
+ * Each word maps to the movies that have it in their title and in their description. <br>
+ * A movie scores the best match of every query word, weighted by where the word was found, how
+ * rare it is and how far it is from the query word. The best movies are kept in a bounded heap,
+ * and the search returns what it has found so far once its time budget runs out.
+ */
+class FuzzySearchIndex {
+
+    // Shorter words are mostly articles and prepositions, which only add noise.
+    private static final int MIN_WORD_LENGTH = 3;
+
+    private static final float TITLE_WEIGHT = 3f;
+    private static final float DESCRIPTION_WEIGHT = 1f;
+
+    private final Map<String, Word> words = new HashMap<>();
+    private BkNode root;
+    private int movieCount;
+
+    // Nodes of the tree whose word is not in the catalog anymore.
+    private int deadWordCount;
+
+    // Scratch space for a search, indexed by the position of a movie in the catalog.
+    private float[] scores = new float[0];
+    private float[] wordScores = new float[0];
+    private int[] previousRow = new int[16];
+    private int[] currentRow = new int[16];
+    private int[] heap = new int[16];
+
+    /**
+     * Indexes a movie.
+     *
+     * @param movie The movie to index.
+     */
+    void add(Movie movie) {
+        for (String text : tokenize(movie.getNormalizedTitle())) {
+            getOrAddWord(text).titleIds.add(movie.getId());
+        }
+        for (String text : tokenize(movie.getNormalizedDescription())) {
+            getOrAddWord(text).descriptionIds.add(movie.getId());
+        }
+        movieCount++;
+    }
+
+    /**
+     * Removes a movie from the index. The movie must still have the title and description it was
+     * indexed with. Words left without movies are dropped, their nodes stay in the tree until
+     * the dead nodes outnumber the live ones, and the tree is rebuilt.
+     *
+     * @param movie The movie to remove.
+     */
+    void remove(Movie movie) {
+        for (String text : tokenize(movie.getNormalizedTitle())) {
+            Word word = words.get(text);
+            if (word != null) {
+                word.titleIds.remove(movie.getId());
+                removeIfUnused(text, word);
+            }
+        }
+        for (String text : tokenize(movie.getNormalizedDescription())) {
+            Word word = words.get(text);
+            if (word != null) {
+                word.descriptionIds.remove(movie.getId());
+                removeIfUnused(text, word);
+            }
+        }
+        movieCount--;
+        if (deadWordCount > words.size()) {
+            rebuildTree();
+        }
+    }
+
+    /**
+     * Finds the movies that best match the words of the query, tolerating a few typos per word.
+     *
+     * @param query Search string.
+     * @param limit Maximum number of movies to return.
+     * @param budgetNanos Time after which the search stops and ranks what it has found.
+     * @param catalog The indexed movies.
+     * @param idIndex Positions of the indexed movies in the catalog.
+     * @return The matching movies, best match first.
+     */
+    List<Movie> search(
+            String query, int limit, long budgetNanos, List<Movie> catalog, IdIndexMap idIndex) {
+        long deadline = System.nanoTime() + budgetNanos;
+        if (scores.length < catalog.size()) {
+            scores = new float[catalog.size()];
+            wordScores = new float[catalog.size()];
+        }
+
+        // Positions of the movies with a score, and of those matched by the current query word.
+        int[] scored = new int[16];
+        int scoredCount = 0;
+        int[] matched = new int[16];
+
+        for (String queryWord : tokenize(TextNormalizer.normalize(query))) {
+            int maxDistance = getMaxDistance(queryWord.length());
+            int matchedCount = 0;
+            for (Match match : findWords(queryWord, maxDistance, deadline)) {
+                float closeness = 1f / (1 + match.distance);
+                int movieFrequency = match.word.titleIds.size + match.word.descriptionIds.size;
+                float rarity = (float) Math.log(1 + (double) movieCount / movieFrequency);
+                for (int pass = 0; pass < 2; pass++) {
+                    PostingList list = pass == 0 ? match.word.titleIds : match.word.descriptionIds;
+                    float score =
+                            (pass == 0 ? TITLE_WEIGHT : DESCRIPTION_WEIGHT) * closeness * rarity;
+                    for (int i = 0; i < list.size; i++) {
+                        int position = idIndex.get(list.ids[i]);
+                        if (wordScores[position] == 0) {
+                            if (matchedCount == matched.length) {
+                                matched = Arrays.copyOf(matched, matchedCount * 2);
+                            }
+                            matched[matchedCount++] = position;
+                        }
+                        // A movie only counts the best match of each query word, so "dream"
+                        // and "dreams" in one title do not add up.
+                        wordScores[position] = Math.max(wordScores[position], score);
+                    }
+                }
+                if (System.nanoTime() > deadline) {
+                    break;
+                }
+            }
+            for (int i = 0; i < matchedCount; i++) {
+                int position = matched[i];
+                if (scores[position] == 0) {
+                    if (scoredCount == scored.length) {
+                        scored = Arrays.copyOf(scored, scoredCount * 2);
+                    }
+                    scored[scoredCount++] = position;
+                }
+                scores[position] += wordScores[position];
+                wordScores[position] = 0;
+            }
+            if (System.nanoTime() > deadline) {
+                break;
+            }
+        }
+
+        List<Movie> results = selectTop(scored, scoredCount, limit, catalog);
+        for (int i = 0; i < scoredCount; i++) {
+            scores[scored[i]] = 0;
+        }
+        return results;
+    }
+
+    /**
+     * Keeps the {@code limit} best scored movies in a min heap of positions, so ranking costs
+     * O(n log k) instead of sorting every scored movie.
+     */
+    private List<Movie> selectTop(int[] scored, int scoredCount, int limit, List<Movie> catalog) {
+        if (limit <= 0 || scoredCount == 0) {
+            return new ArrayList<>();
+        }
+        int capacity = Math.min(limit, scoredCount);
+        if (heap.length < capacity) {
+            heap = new int[capacity];
+        }
+        int size = 0;
+        for (int i = 0; i < scoredCount; i++) {
+            int position = scored[i];
+            if (size < capacity) {
+                heap[size] = position;
+                siftUp(size++);
+            } else if (isWorse(heap[0], position)) {
+                heap[0] = position;
+                siftDown(size);
+            }
+        }
+        Movie[] ranked = new Movie[size];
+        while (size > 0) {
+            ranked[size - 1] = catalog.get(heap[0]);
+            heap[0] = heap[--size];
+            siftDown(size);
+        }
+        return new ArrayList<>(Arrays.asList(ranked));
+    }
+
+    /**
+     * Compares the movies at two positions of the catalog. On a tie, the movie further down the
+     * catalog ranks lower.
+     *
+     * @return True if the movie at position a ranks below the one at position b.
+     */
+    private boolean isWorse(int a, int b) {
+        int byScore = Float.compare(scores[a], scores[b]);
+        return byScore != 0 ? byScore < 0 : a > b;
+    }
+
+    /** Moves the position at {@code index} up the heap, above the positions that rank lower. */
+    private void siftUp(int index) {
+        int position = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            if (!isWorse(position, heap[parent])) {
+                break;
+            }
+            heap[index] = heap[parent];
+            index = parent;
+        }
+        heap[index] = position;
+    }
+
+    /** Moves the root of the heap down, below the positions that rank lower. */
+    private void siftDown(int size) {
+        int position = heap[0];
+        int index = 0;
+        while (2 * index + 1 < size) {
+            int child = 2 * index + 1;
+            if (child + 1 < size && isWorse(heap[child + 1], heap[child])) {
+                child++;
+            }
+            if (!isWorse(heap[child], position)) {
+                break;
+            }
+            heap[index] = heap[child];
+            index = child;
+        }
+        heap[index] = position;
+    }
+
+    /** Walks the BK-tree for the words within {@code maxDistance} of the query word. */
+    private List<Match> findWords(String queryWord, int maxDistance, long deadline) {
+        List<Match> matches = new ArrayList<>();
+        if (root == null) {
+            return matches;
+        }
+        ArrayDeque<BkNode> pending = new ArrayDeque<>();
+        pending.add(root);
+        while (!pending.isEmpty() && System.nanoTime() <= deadline) {
+            BkNode node = pending.poll();
+            int distance = distance(queryWord, node.text);
+            if (distance <= maxDistance) {
+                Word word = words.get(node.text);
+                if (word != null) {
+                    matches.add(new Match(word, distance));
+                }
+            }
+            // By the triangle inequality, only children at a distance from this node within
+            // maxDistance of the query's can hold a match.
+            int from = Math.max(1, distance - maxDistance);
+            int to = Math.min(node.children.length - 1, distance + maxDistance);
+            for (int childDistance = from; childDistance <= to; childDistance++) {
+                if (node.children[childDistance] != null) {
+                    pending.add(node.children[childDistance]);
+                }
+            }
+        }
+        return matches;
+    }
+
+    private Word getOrAddWord(String text) {
+        Word word = words.get(text);
+        if (word == null) {
+            word = new Word();
+            words.put(text, word);
+            if (!insertIntoTree(text)) {
+                // The word was removed from the catalog and is coming back.
+                deadWordCount--;
+            }
+        }
+        return word;
+    }
+
+    private void removeIfUnused(String text, Word word) {
+        if (word.titleIds.size + word.descriptionIds.size == 0) {
+            words.remove(text);
+            deadWordCount++;
+        }
+    }
+
+    /** Rebuilds the tree out of the words still in the catalog. */
+    private void rebuildTree() {
+        root = null;
+        for (String text : words.keySet()) {
+            insertIntoTree(text);
+        }
+        deadWordCount = 0;
+    }
+
+    /**
+     * Inserts a word into the tree.
+     *
+     * @return False if the tree already had a node for the word.
+     */
+    private boolean insertIntoTree(String text) {
+        if (root == null) {
+            root = new BkNode(text);
+            return true;
+        }
+        BkNode node = root;
+        while (true) {
+            int distance = distance(text, node.text);
+            if (distance == 0) {
+                return false;
+            }
+            if (distance >= node.children.length) {
+                node.children = Arrays.copyOf(node.children, distance + 1);
+            }
+            if (node.children[distance] == null) {
+                node.children[distance] = new BkNode(text);
+                return true;
+            }
+            node = node.children[distance];
+        }
+    }
+
+    /** Number of nodes in the tree, dead ones included. */
+    int getTreeSize() {
+        int size = 0;
+        ArrayDeque<BkNode> pending = new ArrayDeque<>();
+        if (root != null) {
+            pending.add(root);
+        }
+        while (!pending.isEmpty()) {
+            BkNode node = pending.poll();
+            size++;
+            for (BkNode child : node.children) {
+                if (child != null) {
+                    pending.add(child);
+                }
+            }
+        }
+        return size;
+    }
+
+    /** Levenshtein distance, keeping two rows of the table. */
+    private int distance(String a, String b) {
+        if (previousRow.length <= b.length()) {
+            previousRow = new int[b.length() + 1];
+            currentRow = new int[b.length() + 1];
+        }
+        for (int j = 0; j <= b.length(); j++) {
+            previousRow[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            currentRow[0] = i;
+            char c = a.charAt(i - 1);
+            for (int j = 1; j <= b.length(); j++) {
+                int substitution = previousRow[j - 1] + (c == b.charAt(j - 1) ? 0 : 1);
+                currentRow[j] =
+                        Math.min(substitution, Math.min(previousRow[j], currentRow[j - 1]) + 1);
+            }
+            int[] row = previousRow;
+            previousRow = currentRow;
+            currentRow = row;
+        }
+        return previousRow[b.length()];
+    }
+
+    /** Allows more typos in longer words, where a typo is less likely to make another word. */
+    private static int getMaxDistance(int length) {
+        if (length <= 3) {
+            return 0;
+        }
+        return length <= 6 ? 1 : 2;
+    }
+
+    /** Splits normalized text into words of letters and digits, skipping short ones. */
+    private static List<String> tokenize(char[] text) {
+        List<String> tokens = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= text.length; i++) {
+            boolean inWord = i < text.length && Character.isLetterOrDigit(text[i]);
+            if (inWord && start < 0) {
+                start = i;
+            } else if (!inWord && start >= 0) {
+                if (i - start >= MIN_WORD_LENGTH) {
+                    tokens.add(new String(text, start, i - start));
+                }
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    private static final class Word {
+
+        final PostingList titleIds = new PostingList();
+        final PostingList descriptionIds = new PostingList();
+    }
+
+    private static final class BkNode {
+
+        final String text;
+
+        /** Children indexed by their distance to this node. */
+        BkNode[] children = new BkNode[0];
+
+        BkNode(String text) {
+            this.text = text;
+        }
+    }
+
+    private static final class Match {
+
+        final Word word;
+        final int distance;
+
+        Match(Word word, int distance) {
+            this.word = word;
+            this.distance = distance;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.assistantplayback.data;
+
+import java.util.Arrays;
+
+/**
+ * Maps movie ids to their index in the catalog. <br>
+ * Open addressing hash map with linear probing over primitive arrays, so neither keys nor values
+ * are boxed and a lookup costs the same no matter how large the catalog grows.
+ */
+final class IdIndexMap {
+
+    /** Returned by {@link #get(int)} when the id is not in the map. */
+    static final int NOT_FOUND = -1;
+
+    private static final int MIN_CAPACITY = 16;
+
+    private int[] keys;
+    private int[] values;
+    private boolean[] used;
+    private int size;
+    private int mask;
+
+    IdIndexMap(int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the index mapped to the id.
+     *
+     * @param id movie's id.
+     * @return The index, or {@link #NOT_FOUND}.
+     */
+    int get(int id) {
+        for (int slot = slotOf(id); used[slot]; slot = (slot + 1) & mask) {
+            if (keys[slot] == id) {
+                return values[slot];
+            }
+        }
+        return NOT_FOUND;
+    }
+
+    /**
+     * Maps the id to the index, replacing any previous mapping.
+     *
+     * @param id movie's id.
+     * @param index Index of the movie in the catalog.
+     */
+    void put(int id, int index) {
+        int slot = slotOf(id);
+        while (used[slot]) {
+            if (keys[slot] == id) {
+                values[slot] = index;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        used[slot] = true;
+        keys[slot] = id;
+        values[slot] = index;
+        if (++size > keys.length * 3 / 4) {
+            rehash(keys.length * 2);
+        }
+    }
+
+    /**
+     * Removes the mapping for the id.
+     *
+     * @param id movie's id.
+     */
+    void remove(int id) {
+        int slot = slotOf(id);
+        while (used[slot] && keys[slot] != id) {
+            slot = (slot + 1) & mask;
+        }
+        if (!used[slot]) {
+            return;
+        }
+
+        // Shift the following entries of the probe run back so lookups never hit a hole.
+        int hole = slot;
+        for (int next = (hole + 1) & mask; used[next]; next = (next + 1) & mask) {
+            int home = slotOf(keys[next]);
+            boolean movable =
+                    hole <= next ? (home <= hole || home > next) : (home <= hole && home > next);
+            if (movable) {
+                keys[hole] = keys[next];
+                values[hole] = values[next];
+                hole = next;
+            }
+        }
+        used[hole] = false;
+        size--;
+    }
+
+    void clear() {
+        Arrays.fill(used, false);
+        size = 0;
+    }
+
+    private int slotOf(int id) {
+        // Fibonacci hashing spreads sequential ids over the whole table.
+        int hash = id * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        boolean[] oldUsed = used;
+        allocate(capacity);
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldUsed[i]) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new int[capacity];
+        used = new boolean[capacity];
+        mask = capacity - 1;
+    }
+
+    private static int capacityFor(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity * 3 / 4 < expectedSize) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+}
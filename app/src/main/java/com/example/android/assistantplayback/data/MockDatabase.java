@@ -21,13 +21,23 @@ import android.media.Rating;
 
 import com.example.android.assistantplayback.model.Movie;
 import com.example.android.assistantplayback.model.MovieBuilder;
+import com.example.android.assistantplayback.model.Rendition;
+import com.example.android.assistantplayback.model.TextNormalizer;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
-/** Mock data to provide content for search results. */
+/**
+ * Mock data to provide content for search results. <br>
+ * The catalog starts with a few hardcoded movies, kept on the heap with in-memory indexes. When a
+ * {@link MovieCatalogStore} is in use, the store is the catalog instead: lookups, searches, paging
+ * and changes go to the store, so no copy of the catalog is kept in memory and changes survive
+ * restarts.
+ */
 public class MockDatabase {
 
     // The columns we'll include in the video database table
@@ -48,22 +58,238 @@ public class MockDatabase {
     public static final String KEY_COLUMN_DURATION = SearchManager.SUGGEST_COLUMN_DURATION;
     public static final String KEY_ACTION = SearchManager.SUGGEST_COLUMN_INTENT_ACTION;
 
+    // Time after which a ranked search returns the best movies found so far.
+    private static final long RANKED_SEARCH_BUDGET_MS = 50;
+
     private static List<Movie> movies;
+    private static IdIndexMap idIndex;
+    private static SearchIndex searchIndex;
+    private static FuzzySearchIndex fuzzySearchIndex;
+    private static SortedMovieIndex sortedIndex;
+    private static int version;
+    private static MovieCatalogStore catalogStore;
 
     /**
-     * Returns a list of all of the movies in the database.
+     * Makes the catalog read from and write to a store, which holds the changes made in previous
+     * runs of the app. The in-memory catalog is dropped.
+     *
+     * @param store The store of the catalog, or null to go back to the in-memory catalog.
+     */
+    static synchronized void setCatalogStore(MovieCatalogStore store) {
+        if (catalogStore == store) {
+            return;
+        }
+        catalogStore = store;
+        dropCatalog();
+    }
+
+    /**
+     * Goes back to the in-memory catalog of the default movies, dropping the store and every
+     * change. Tests start with it, as the catalog is shared by everything in the process.
+     */
+    static synchronized void reset() {
+        catalogStore = null;
+        dropCatalog();
+    }
+
+    private static void dropCatalog() {
+        movies = null;
+        idIndex = null;
+        searchIndex = null;
+        fuzzySearchIndex = null;
+        sortedIndex = null;
+        version++;
+    }
+
+    /**
+     * Returns a list of all of the movies in the database. The list is a snapshot, later changes
+     * to the catalog are not reflected in it. With a store, every movie is read from disk, prefer
+     * {@link #getMovies(int, int)}.
      *
      * @return All of the movies.
      */
-    public static List<Movie> getAllMovies() {
+    public static synchronized List<Movie> getAllMovies() {
+        return catalogStore != null ? catalogStore.getAllMovies() : getCatalog();
+    }
+
+    /** Returns the in-memory catalog, loading the default movies and their indexes if needed. */
+    private static List<Movie> getCatalog() {
         if (movies == null) {
-            movies =
-                    Arrays.asList(
-                            elephantsDream(), bigBuckBunny(), jurassicPark(), theIncredibles());
+            List<Movie> catalog = getDefaultMovies();
+            idIndex = new IdIndexMap(catalog.size());
+            searchIndex = new SearchIndex();
+            fuzzySearchIndex = new FuzzySearchIndex();
+            for (int index = 0; index < catalog.size(); index++) {
+                Movie movie = catalog.get(index);
+                idIndex.put(movie.getId(), index);
+                searchIndex.add(movie);
+                fuzzySearchIndex.add(movie);
+            }
+            movies = Collections.unmodifiableList(catalog);
         }
         return movies;
     }
 
+    /**
+     * Returns the hardcoded movies the catalog starts with.
+     *
+     * @return New instances of the default movies.
+     */
+    static List<Movie> getDefaultMovies() {
+        return Arrays.asList(elephantsDream(), bigBuckBunny(), jurassicPark(), theIncredibles());
+    }
+
+    /**
+     * Returns the number of movies in the database.
+     *
+     * @return Size of the catalog.
+     */
+    public static synchronized int getMovieCount() {
+        return catalogStore != null ? catalogStore.getMovieCount() : getCatalog().size();
+    }
+
+    /**
+     * Returns a range of the movies in the database.
+     *
+     * @param start Index of the first movie.
+     * @param count Maximum number of movies.
+     * @return The movies from {@code start}, fewer than count at the end of the catalog.
+     */
+    public static synchronized List<Movie> getMovies(int start, int count) {
+        if (catalogStore != null) {
+            return catalogStore.getMovies(start, count);
+        }
+        List<Movie> catalog = getCatalog();
+        int end = Math.min(start + count, catalog.size());
+        return start < end
+                ? new ArrayList<>(catalog.subList(start, end))
+                : Collections.<Movie>emptyList();
+    }
+
+    /**
+     * Adds a movie to the catalog, or replaces the movie with the same id. The id and search
+     * indexes are updated incrementally.
+     *
+     * @param movie The movie to add.
+     */
+    public static synchronized void addMovie(Movie movie) {
+        MovieBatch batch = new MovieBatch();
+        batch.put(movie);
+        applyBatch(batch);
+    }
+
+    /**
+     * Removes a movie from the catalog and its indexes.
+     *
+     * @param id The id of the movie to remove.
+     * @return True if a movie was removed.
+     */
+    public static synchronized boolean removeMovie(int id) {
+        MovieBatch batch = new MovieBatch();
+        if (!batch.remove(id)) {
+            return false;
+        }
+        applyBatch(batch);
+        return true;
+    }
+
+    /**
+     * Applies a batch of changes at once. With a store, the batch is written in one transaction.
+     * Otherwise the catalog is copied a single time, and the id, search and sorted indexes are
+     * updated incrementally for the changed movies only. The version changes once, so readers see
+     * either none or all of the batch.
+     *
+     * @param batch The changes to apply.
+     * @throws android.database.SQLException If the store could not write the batch, in which case
+     *     the catalog is unchanged.
+     */
+    static synchronized void applyBatch(MovieBatch batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        if (catalogStore != null) {
+            catalogStore.applyBatch(batch);
+            version++;
+            return;
+        }
+        List<Movie> catalog = new ArrayList<>(getCatalog());
+        int previousSize = catalog.size();
+        // Where the sorted index finds every movie it has after the batch, -1 for the changed ones.
+        int[] newPositions = null;
+        if (sortedIndex != null) {
+            newPositions = new int[previousSize];
+            for (int index = 0; index < previousSize; index++) {
+                newPositions[index] = index;
+            }
+        }
+        int[] changedIds = new int[batch.getChanges().size()];
+        int changedCount = 0;
+        boolean removed = false;
+        for (Map.Entry<Integer, Movie> change : batch.getChanges().entrySet()) {
+            int id = change.getKey();
+            Movie movie = change.getValue();
+            int index = idIndex.get(id);
+            if (index != IdIndexMap.NOT_FOUND) {
+                // Removed movies leave a hole until the end, so indexes of the others stay valid.
+                Movie previous = catalog.set(index, movie);
+                searchIndex.remove(previous);
+                fuzzySearchIndex.remove(previous);
+                if (newPositions != null && index < previousSize) {
+                    newPositions[index] = -1;
+                }
+                if (movie == null) {
+                    idIndex.remove(id);
+                    removed = true;
+                }
+            } else if (movie != null) {
+                idIndex.put(id, catalog.size());
+                catalog.add(movie);
+            }
+            if (movie != null) {
+                searchIndex.add(movie);
+                fuzzySearchIndex.add(movie);
+                changedIds[changedCount++] = id;
+            }
+        }
+        if (removed) {
+            // Closes the holes in one pass, every movie after a hole moves up.
+            int size = 0;
+            for (int index = 0; index < catalog.size(); index++) {
+                Movie movie = catalog.get(index);
+                if (movie != null) {
+                    if (index != size) {
+                        catalog.set(size, movie);
+                        idIndex.put(movie.getId(), size);
+                    }
+                    if (newPositions != null && index < previousSize && newPositions[index] >= 0) {
+                        newPositions[index] = size;
+                    }
+                    size++;
+                }
+            }
+            catalog.subList(size, catalog.size()).clear();
+        }
+        movies = Collections.unmodifiableList(catalog);
+        if (sortedIndex != null) {
+            int[] changed = new int[changedCount];
+            for (int i = 0; i < changedCount; i++) {
+                changed[i] = idIndex.get(changedIds[i]);
+            }
+            sortedIndex.update(catalog, newPositions, changed);
+        }
+        version++;
+    }
+
+    /**
+     * Returns a number that changes every time the catalog changes. Anything derived from the
+     * catalog is stale once the version differs from the one it was derived at.
+     *
+     * @return The version of the catalog.
+     */
+    public static synchronized int getVersion() {
+        return version;
+    }
+
     /**
      * Searches for a movie whose title or description can match against the query parameter.
      *
@@ -71,15 +297,69 @@ public class MockDatabase {
      * @return A list of movies that match the query string.
      */
     public List<Movie> search(String query) {
-        query = query.toLowerCase();
-        List<Movie> results = new ArrayList<>();
-        for (Movie movie : getAllMovies()) {
-            if (movie.getTitle().toLowerCase().contains(query)
-                    || movie.getDescription().toLowerCase().contains(query)) {
-                results.add(movie);
+        return search(query, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Searches for at most {@code limit} movies whose title or description can match against the
+     * query parameter. The search stops as soon as enough movies are found.
+     *
+     * @param query Search string.
+     * @param limit Maximum number of movies to return.
+     * @return A list of movies that match the query string.
+     */
+    public List<Movie> search(String query, int limit) {
+        synchronized (MockDatabase.class) {
+            if (catalogStore != null) {
+                return catalogStore.search(query, limit);
             }
+            List<Movie> catalog = getCatalog();
+            return searchIndex.search(query, limit, catalog, idIndex);
+        }
+    }
+
+    /**
+     * Searches for the movies that best match the words of the query, even when some of the words
+     * are misspelled, as voice recognition often does. Title matches rank above description
+     * matches. The search is bounded in time, and ranks what it found when it runs out. <br>
+     * With a store, this is the full text search of the store, which does not tolerate typos.
+     *
+     * @param query Search string.
+     * @param limit Maximum number of movies to return.
+     * @return A list of movies that match the query string, best match first.
+     */
+    public List<Movie> rankedSearch(String query, int limit) {
+        synchronized (MockDatabase.class) {
+            if (catalogStore != null) {
+                return catalogStore.search(query, limit);
+            }
+            List<Movie> catalog = getCatalog();
+            return fuzzySearchIndex.search(
+                    query,
+                    limit,
+                    TimeUnit.MILLISECONDS.toNanos(RANKED_SEARCH_BUDGET_MS),
+                    catalog,
+                    idIndex);
         }
-        return results;
+    }
+
+    /**
+     * Finds the movies matching the filters of a query, in its sort order. The sorted indexes are
+     * built by the first query after the catalog is loaded, and kept up to date by later changes.
+     * With a store, the store runs the query.
+     *
+     * @param query Filters and sort order.
+     * @return The matching movies.
+     */
+    static synchronized List<Movie> queryMovies(MovieQuery query) {
+        if (catalogStore != null) {
+            return catalogStore.queryMovies(query);
+        }
+        List<Movie> catalog = getCatalog();
+        if (sortedIndex == null) {
+            sortedIndex = new SortedMovieIndex(catalog);
+        }
+        return sortedIndex.query(query, catalog);
     }
 
     /**
@@ -88,13 +368,79 @@ public class MockDatabase {
      * @param id movie's id.
      * @return A movie with the id.
      */
-    public static Movie findMovieWithId(int id) {
-        for (Movie movie : getAllMovies()) {
-            if (movie.getId() == id) {
-                return movie;
+    public static synchronized Movie findMovieWithId(int id) {
+        Movie movie = getMovieWithId(id);
+        if (movie == null) {
+            throw new IllegalArgumentException("Cannot find movie with id: " + id);
+        }
+        return movie;
+    }
+
+    /**
+     * Finds a particular movie with the given id.
+     *
+     * @param id movie's id.
+     * @return A movie with the id, or null if there is none.
+     */
+    public static synchronized Movie getMovieWithId(int id) {
+        if (catalogStore != null) {
+            return catalogStore.getMovieWithId(id);
+        }
+        int index = indexOfMovieWithId(id);
+        return index != IdIndexMap.NOT_FOUND ? movies.get(index) : null;
+    }
+
+    /**
+     * Finds the position of a movie in {@link #getAllMovies()}.
+     *
+     * @param id movie's id.
+     * @return The index of the movie, or -1 if there is no movie with the id.
+     */
+    public static synchronized int indexOfMovieWithId(int id) {
+        if (catalogStore != null) {
+            return catalogStore.indexOfMovieWithId(id);
+        }
+        getCatalog();
+        return idIndex.get(id);
+    }
+
+    /**
+     * Finds the movies with the given ids. Ids that are no longer in the catalog are skipped.
+     *
+     * @param ids movies' ids.
+     * @param count Number of ids to look up from the start of the array.
+     * @return The movies, in the order of the ids.
+     */
+    public static synchronized List<Movie> findMoviesWithIds(int[] ids, int count) {
+        List<Movie> results = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Movie movie = getMovieWithId(ids[i]);
+            if (movie != null) {
+                results.add(movie);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Keeps the ids of the movies whose title or description can match against the query. The
+     * query is normalized once, candidates are matched without allocating.
+     *
+     * @param ids movies' ids.
+     * @param query Search string.
+     * @return The ids of the matching movies, in the order of the given ids.
+     */
+    static synchronized int[] filterMovieIds(int[] ids, String query) {
+        char[] normalizedQuery = TextNormalizer.normalize(query);
+        int[] results = new int[ids.length];
+        int count = 0;
+        for (int id : ids) {
+            Movie movie = getMovieWithId(id);
+            if (movie != null && SearchIndex.matches(movie, normalizedQuery)) {
+                results[count++] = id;
             }
         }
-        throw new IllegalArgumentException("Cannot find movie with id: " + id);
+        return Arrays.copyOf(results, count);
     }
 
     private static Movie elephantsDream() {
@@ -133,6 +479,18 @@ public class MockDatabase {
                         "https://peach.blender.org/wp-content/uploads/title_anouncement.jpg?x11217")
                 .setVideoUrl(
                         "http://download.blender.org/peach/bigbuckbunny_movies/BigBuckBunny_320x180.mp4")
+                .addRendition(
+                        new Rendition(
+                                "http://download.blender.org/peach/bigbuckbunny_movies/BigBuckBunny_320x180.mp4",
+                                320,
+                                180,
+                                820000))
+                .addRendition(
+                        new Rendition(
+                                "http://download.blender.org/peach/bigbuckbunny_movies/BigBuckBunny_640x360.m4v",
+                                640,
+                                360,
+                                1550000))
                 .setContentType("video/mp4")
                 .setWidth(1280)
                 .setHeight(720)
@@ -186,6 +544,18 @@ public class MockDatabase {
                         "https://peach.blender.org/wp-content/uploads/title_anouncement.jpg?x11217")
                 .setVideoUrl(
                         "http://download.blender.org/peach/bigbuckbunny_movies/BigBuckBunny_320x180.mp4")
+                .addRendition(
+                        new Rendition(
+                                "http://download.blender.org/peach/bigbuckbunny_movies/BigBuckBunny_320x180.mp4",
+                                320,
+                                180,
+                                820000))
+                .addRendition(
+                        new Rendition(
+                                "http://download.blender.org/peach/bigbuckbunny_movies/BigBuckBunny_640x360.m4v",
+                                640,
+                                360,
+                                1550000))
                 .setContentType("video/mp4")
                 .setWidth(1280)
                 .setHeight(720)
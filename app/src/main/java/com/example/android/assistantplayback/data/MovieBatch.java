@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.assistantplayback.data;
+
+import com.example.android.assistantplayback.model.Movie;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Changes to the catalog that are applied together by {@link MockDatabase#applyBatch}. <br>
+ * Only the last change of each movie is kept, which has the same result as applying the changes
+ * one after the other. Reads through the batch see its own changes on top of the catalog.
+ */
+final class MovieBatch {
+
+    // The new version of each changed movie by id, null for a removed movie.
+    private final Map<Integer, Movie> mChanges = new LinkedHashMap<>();
+
+    /**
+     * Adds a movie, or replaces the movie with the same id.
+     *
+     * @param movie The movie to add.
+     * @return True if the movie replaced another one.
+     */
+    boolean put(Movie movie) {
+        boolean replaced = find(movie.getId()) != null;
+        mChanges.put(movie.getId(), movie);
+        return replaced;
+    }
+
+    /**
+     * Removes a movie.
+     *
+     * @param id The id of the movie to remove.
+     * @return True if there was a movie to remove.
+     */
+    boolean remove(int id) {
+        boolean removed = find(id) != null;
+        mChanges.put(id, null);
+        return removed;
+    }
+
+    /**
+     * Removes every movie of the catalog and of the batch.
+     *
+     * @return The number of movies removed.
+     */
+    int removeAll() {
+        int count = 0;
+        for (Movie movie : MockDatabase.getAllMovies()) {
+            if (remove(movie.getId())) {
+                count++;
+            }
+        }
+        for (Integer id : new ArrayList<>(mChanges.keySet())) {
+            if (remove(id)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Finds a movie, looking at the changes of the batch first.
+     *
+     * @param id The id of the movie.
+     * @return The movie, or null if there is none.
+     */
+    Movie find(int id) {
+        if (mChanges.containsKey(id)) {
+            return mChanges.get(id);
+        }
+        return MockDatabase.getMovieWithId(id);
+    }
+
+    boolean isEmpty() {
+        return mChanges.isEmpty();
+    }
+
+    /** Returns the changes in the order they were first made, null values for removals. */
+    Map<Integer, Movie> getChanges() {
+        return Collections.unmodifiableMap(mChanges);
+    }
+}
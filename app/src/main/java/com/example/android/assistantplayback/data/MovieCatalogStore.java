@@ -0,0 +1,695 @@
+/*
+ * Copyright (c) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.assistantplayback.data;
+
+import android.app.SearchManager;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.provider.BaseColumns;
+
+import com.example.android.assistantplayback.model.Movie;
+import com.example.android.assistantplayback.model.MovieBuilder;
+import com.example.android.assistantplayback.model.Rendition;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stores the movie catalog in an on-disk SQLite database instead of on the heap. <br>
+ * Titles and descriptions are indexed by an FTS4 table, so {@link #querySuggestions(String, int,
+ * String[])} can hand the database cursor straight to the {@link VideoContentProvider}. The cursor
+ * pulls rows from disk one window at a time, no {@link Movie} is created while answering a
+ * suggestion query.
+ * <br>
+ * The store is seeded with the default movies when it is created. After that it is the catalog,
+ * {@link MockDatabase} sends its lookups, searches, queries and changes to it when the store is in
+ * use. Upgrades migrate the tables in place, so the changes of earlier versions are kept.
+ * <br>
+ * Note: FTS matches words that start with the query terms, whereas {@link MockDatabase#search}
+ * matches any substring.
+ */
+public class MovieCatalogStore extends SQLiteOpenHelper {
+
+    private static final String DATABASE_NAME = "catalog.db";
+    private static final int DATABASE_VERSION = 3;
+
+    private static final String TABLE_MOVIES = "movies";
+    private static final String TABLE_MOVIES_FTS = "movies_fts";
+    private static final String TABLE_RENDITIONS = "renditions";
+
+    // Columns of the renditions table.
+    private static final String KEY_MOVIE_ID = "movie_id";
+    private static final String KEY_URL = "url";
+    private static final String KEY_WIDTH = "width";
+    private static final String KEY_HEIGHT = "height";
+    private static final String KEY_BITRATE = "bitrate";
+
+    // Number of movies whose renditions are read with one query, below the limit of SQL variables.
+    private static final int RENDITION_QUERY_BATCH = 500;
+
+    // Columns that are not part of a search suggestion.
+    static final String KEY_BACKGROUND_IMAGE = "background_image";
+    static final String KEY_VIDEO_URL = "video_url";
+
+    // Purchase price as a number, so queries can filter and sort by it.
+    private static final String KEY_PRICE_VALUE = "purchase_price_value";
+
+    // Column of each key of MovieQuery, indexed by key.
+    private static final String[] QUERY_COLUMNS = {
+        MockDatabase.KEY_PRODUCTION_YEAR,
+        MockDatabase.KEY_RATING_SCORE,
+        MockDatabase.KEY_COLUMN_DURATION,
+        KEY_PRICE_VALUE,
+        MockDatabase.KEY_IS_LIVE
+    };
+
+    // SQL expression of each column of MovieSuggestionCursor.COLUMNS, in the same order.
+    private static final String[] SUGGESTION_EXPRESSIONS = {
+        TABLE_MOVIES + "." + BaseColumns._ID,
+        MockDatabase.KEY_NAME,
+        MockDatabase.KEY_DESCRIPTION,
+        MockDatabase.KEY_ICON,
+        MockDatabase.KEY_DATA_TYPE,
+        MockDatabase.KEY_IS_LIVE,
+        MockDatabase.KEY_VIDEO_WIDTH,
+        MockDatabase.KEY_VIDEO_HEIGHT,
+        MockDatabase.KEY_AUDIO_CHANNEL_CONFIG,
+        MockDatabase.KEY_PURCHASE_PRICE,
+        MockDatabase.KEY_RENTAL_PRICE,
+        MockDatabase.KEY_RATING_STYLE,
+        MockDatabase.KEY_RATING_SCORE,
+        MockDatabase.KEY_PRODUCTION_YEAR,
+        MockDatabase.KEY_COLUMN_DURATION,
+        "'GLOBALSEARCH' AS " + MockDatabase.KEY_ACTION,
+        TABLE_MOVIES + "." + BaseColumns._ID + " AS " + SearchManager.SUGGEST_COLUMN_INTENT_DATA_ID
+    };
+
+    private static MovieCatalogStore sInstance;
+
+    /**
+     * Returns the store of the app. The provider and the screens share it, so they share its
+     * connection to the database.
+     *
+     * @param context Any context, only its application context is kept.
+     * @return The store.
+     */
+    public static synchronized MovieCatalogStore getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new MovieCatalogStore(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private MovieCatalogStore(Context context) {
+        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL(
+                "CREATE TABLE " + TABLE_MOVIES + " ("
+                        + BaseColumns._ID + " INTEGER PRIMARY KEY, "
+                        + MockDatabase.KEY_NAME + " TEXT NOT NULL, "
+                        + MockDatabase.KEY_DESCRIPTION + " TEXT, "
+                        + MockDatabase.KEY_ICON + " TEXT, "
+                        + KEY_BACKGROUND_IMAGE + " TEXT, "
+                        + KEY_VIDEO_URL + " TEXT, "
+                        + MockDatabase.KEY_DATA_TYPE + " TEXT, "
+                        + MockDatabase.KEY_IS_LIVE + " INTEGER, "
+                        + MockDatabase.KEY_VIDEO_WIDTH + " INTEGER, "
+                        + MockDatabase.KEY_VIDEO_HEIGHT + " INTEGER, "
+                        + MockDatabase.KEY_AUDIO_CHANNEL_CONFIG + " TEXT, "
+                        + MockDatabase.KEY_PURCHASE_PRICE + " TEXT, "
+                        + MockDatabase.KEY_RENTAL_PRICE + " TEXT, "
+                        + MockDatabase.KEY_RATING_STYLE + " INTEGER, "
+                        + MockDatabase.KEY_RATING_SCORE + " REAL, "
+                        + MockDatabase.KEY_PRODUCTION_YEAR + " INTEGER, "
+                        + MockDatabase.KEY_COLUMN_DURATION + " INTEGER, "
+                        + KEY_PRICE_VALUE + " REAL)");
+
+        createRenditionsTable(db);
+
+        // External content FTS table, the text lives only once in the movies table.
+        db.execSQL(
+                "CREATE VIRTUAL TABLE " + TABLE_MOVIES_FTS + " USING fts4("
+                        + "content=\"" + TABLE_MOVIES + "\", "
+                        + MockDatabase.KEY_NAME + ", "
+                        + MockDatabase.KEY_DESCRIPTION + ")");
+
+        // Keep the FTS index in sync with the movies table.
+        String ftsColumns = MockDatabase.KEY_NAME + ", " + MockDatabase.KEY_DESCRIPTION;
+        db.execSQL(
+                "CREATE TRIGGER movies_bu BEFORE UPDATE ON " + TABLE_MOVIES + " BEGIN "
+                        + "DELETE FROM " + TABLE_MOVIES_FTS + " WHERE docid = old._id; END");
+        db.execSQL(
+                "CREATE TRIGGER movies_bd BEFORE DELETE ON " + TABLE_MOVIES + " BEGIN "
+                        + "DELETE FROM " + TABLE_MOVIES_FTS + " WHERE docid = old._id; END");
+        db.execSQL(
+                "CREATE TRIGGER movies_au AFTER UPDATE ON " + TABLE_MOVIES + " BEGIN "
+                        + "INSERT INTO " + TABLE_MOVIES_FTS + " (docid, " + ftsColumns + ") "
+                        + "VALUES (new._id, new." + MockDatabase.KEY_NAME
+                        + ", new." + MockDatabase.KEY_DESCRIPTION + "); END");
+        db.execSQL(
+                "CREATE TRIGGER movies_ai AFTER INSERT ON " + TABLE_MOVIES + " BEGIN "
+                        + "INSERT INTO " + TABLE_MOVIES_FTS + " (docid, " + ftsColumns + ") "
+                        + "VALUES (new._id, new." + MockDatabase.KEY_NAME
+                        + ", new." + MockDatabase.KEY_DESCRIPTION + "); END");
+
+        db.beginTransaction();
+        try {
+            // Not MockDatabase.getAllMovies(), which loads from this store once it is in use.
+            for (Movie movie : MockDatabase.getDefaultMovies()) {
+                db.insert(TABLE_MOVIES, null, toContentValues(movie));
+                insertRenditions(db, movie);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Migrates the tables one version at a time, keeping the movies written by earlier versions of
+     * the app. The helper runs the migration in a transaction.
+     */
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        if (oldVersion < 2) {
+            createRenditionsTable(db);
+            // Version 1 stored no renditions, the default movies that are left get theirs back.
+            for (Movie movie : MockDatabase.getDefaultMovies()) {
+                if (DatabaseUtils.queryNumEntries(
+                                db,
+                                TABLE_MOVIES,
+                                BaseColumns._ID + " = ?",
+                                new String[] {String.valueOf(movie.getId())})
+                        > 0) {
+                    insertRenditions(db, movie);
+                }
+            }
+        }
+        if (oldVersion < 3) {
+            db.execSQL(
+                    "ALTER TABLE " + TABLE_MOVIES + " ADD COLUMN " + KEY_PRICE_VALUE + " REAL");
+            fillPriceValues(db);
+        }
+    }
+
+    private static void createRenditionsTable(SQLiteDatabase db) {
+        db.execSQL(
+                "CREATE TABLE " + TABLE_RENDITIONS + " ("
+                        + BaseColumns._ID + " INTEGER PRIMARY KEY, "
+                        + KEY_MOVIE_ID + " INTEGER NOT NULL, "
+                        + KEY_URL + " TEXT NOT NULL, "
+                        + KEY_WIDTH + " INTEGER, "
+                        + KEY_HEIGHT + " INTEGER, "
+                        + KEY_BITRATE + " INTEGER)");
+        db.execSQL(
+                "CREATE INDEX renditions_movie_id ON " + TABLE_RENDITIONS
+                        + " (" + KEY_MOVIE_ID + ")");
+    }
+
+    /** Parses the purchase price of every movie into the column queries filter and sort by. */
+    private static void fillPriceValues(SQLiteDatabase db) {
+        Cursor cursor =
+                db.query(
+                        TABLE_MOVIES,
+                        new String[] {BaseColumns._ID, MockDatabase.KEY_PURCHASE_PRICE},
+                        null,
+                        null,
+                        null,
+                        null,
+                        null);
+        try {
+            ContentValues values = new ContentValues();
+            while (cursor.moveToNext()) {
+                String price =
+                        cursor.getString(
+                                cursor.getColumnIndexOrThrow(MockDatabase.KEY_PURCHASE_PRICE));
+                values.put(KEY_PRICE_VALUE, MovieQuery.parsePrice(price));
+                db.update(
+                        TABLE_MOVIES,
+                        values,
+                        BaseColumns._ID + " = ?",
+                        new String[] {
+                            cursor.getString(cursor.getColumnIndexOrThrow(BaseColumns._ID))
+                        });
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Returns a list of all of the movies in the database.
+     *
+     * @return All of the movies.
+     */
+    public List<Movie> getAllMovies() {
+        Cursor cursor =
+                getReadableDatabase()
+                        .query(TABLE_MOVIES, null, null, null, null, null, BaseColumns._ID);
+        return readMovies(cursor);
+    }
+
+    /**
+     * Returns the number of movies in the database.
+     *
+     * @return Size of the catalog.
+     */
+    public int getMovieCount() {
+        return (int) DatabaseUtils.queryNumEntries(getReadableDatabase(), TABLE_MOVIES);
+    }
+
+    /**
+     * Returns a range of the movies in the database, ordered by id. Only the movies of the range
+     * are read from disk.
+     *
+     * @param start Index of the first movie.
+     * @param count Maximum number of movies.
+     * @return The movies from {@code start}, fewer than count at the end of the catalog.
+     */
+    public List<Movie> getMovies(int start, int count) {
+        Cursor cursor =
+                getReadableDatabase()
+                        .query(
+                                TABLE_MOVIES,
+                                null,
+                                null,
+                                null,
+                                null,
+                                null,
+                                BaseColumns._ID,
+                                start + ", " + count);
+        return readMovies(cursor);
+    }
+
+    /**
+     * Searches for a movie whose title or description has words starting with the query terms.
+     *
+     * @param query Search string.
+     * @return A list of movies that match the query string.
+     */
+    public List<Movie> search(String query) {
+        return search(query, -1);
+    }
+
+    /**
+     * Searches for at most {@code limit} movies whose title or description has words starting
+     * with the query terms. Only the matching rows are read from disk.
+     *
+     * @param query Search string.
+     * @param limit Maximum number of movies, or a negative value for no limit.
+     * @return A list of movies that match the query string, ordered by id.
+     */
+    public List<Movie> search(String query, int limit) {
+        String match = toMatchExpression(query);
+        if (match == null) {
+            return limit >= 0 ? getMovies(0, limit) : getAllMovies();
+        }
+        StringBuilder sql =
+                new StringBuilder("SELECT ").append(TABLE_MOVIES).append(".* FROM ")
+                        .append(TABLE_MOVIES).append(" JOIN ").append(TABLE_MOVIES_FTS)
+                        .append(" ON ").append(TABLE_MOVIES_FTS).append(".docid = ")
+                        .append(TABLE_MOVIES).append('.').append(BaseColumns._ID)
+                        .append(" WHERE ").append(TABLE_MOVIES_FTS).append(" MATCH ?")
+                        .append(" ORDER BY ").append(TABLE_MOVIES).append('.')
+                        .append(BaseColumns._ID);
+        if (limit >= 0) {
+            sql.append(" LIMIT ").append(limit);
+        }
+        Cursor cursor = getReadableDatabase().rawQuery(sql.toString(), new String[] {match});
+        return readMovies(cursor);
+    }
+
+    /**
+     * Finds the movies matching the filters of a query, in its sort order. Movies with the same
+     * value are ordered by id, reversed in a descending order, like the in-memory catalog orders
+     * them.
+     *
+     * @param query Filters and sort order.
+     * @return The matching movies.
+     */
+    List<Movie> queryMovies(MovieQuery query) {
+        StringBuilder selection = new StringBuilder();
+        for (int key = 0; key < MovieQuery.KEY_COUNT; key++) {
+            if (query.filtered[key]) {
+                appendBound(selection, QUERY_COLUMNS[key], true, query.min[key]);
+                appendBound(selection, QUERY_COLUMNS[key], false, query.max[key]);
+            }
+        }
+        String direction = query.descending ? " DESC" : "";
+        String orderBy = BaseColumns._ID + direction;
+        if (query.sortKey >= 0) {
+            orderBy = QUERY_COLUMNS[query.sortKey] + direction + ", " + orderBy;
+        }
+        Cursor cursor =
+                getReadableDatabase()
+                        .query(
+                                TABLE_MOVIES,
+                                null,
+                                selection.length() > 0 ? selection.toString() : null,
+                                null,
+                                null,
+                                null,
+                                orderBy,
+                                query.limit != Integer.MAX_VALUE
+                                        ? String.valueOf(query.limit)
+                                        : null);
+        return readMovies(cursor);
+    }
+
+    /**
+     * Appends an inclusive bound to a selection. Bounds are written as numbers, since arguments
+     * would be bound as text. A bound at infinity on its own side holds every value, and is left
+     * out.
+     */
+    private static void appendBound(
+            StringBuilder selection, String column, boolean lower, double bound) {
+        if (bound == (lower ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY)) {
+            return;
+        }
+        if (selection.length() > 0) {
+            selection.append(" AND ");
+        }
+        selection.append(column).append(lower ? " >= " : " <= ").append(toSqlNumber(bound));
+    }
+
+    /** Writes a number as an SQL literal. SQLite reads 9e999 as infinity. */
+    private static String toSqlNumber(double value) {
+        if (Double.isNaN(value)) {
+            return "NULL";
+        }
+        if (Double.isInfinite(value)) {
+            return value > 0 ? "9e999" : "-9e999";
+        }
+        return Double.toString(value);
+    }
+
+    /**
+     * Finds a particular movie with the given id.
+     *
+     * @param id movie's id.
+     * @return A movie with the id.
+     */
+    public Movie findMovieWithId(int id) {
+        Movie movie = getMovieWithId(id);
+        if (movie == null) {
+            throw new IllegalArgumentException("Cannot find movie with id: " + id);
+        }
+        return movie;
+    }
+
+    /**
+     * Finds a particular movie with the given id.
+     *
+     * @param id movie's id.
+     * @return A movie with the id, or null if there is none.
+     */
+    public Movie getMovieWithId(int id) {
+        Cursor cursor =
+                getReadableDatabase()
+                        .query(
+                                TABLE_MOVIES,
+                                null,
+                                BaseColumns._ID + " = ?",
+                                new String[] {String.valueOf(id)},
+                                null,
+                                null,
+                                null);
+        List<Movie> movies = readMovies(cursor);
+        return movies.isEmpty() ? null : movies.get(0);
+    }
+
+    /**
+     * Finds the position of a movie in {@link #getAllMovies()}, which is ordered by id.
+     *
+     * @param id movie's id.
+     * @return The index of the movie, or -1 if there is no movie with the id.
+     */
+    public int indexOfMovieWithId(int id) {
+        SQLiteDatabase db = getReadableDatabase();
+        String[] args = {String.valueOf(id)};
+        if (DatabaseUtils.queryNumEntries(db, TABLE_MOVIES, BaseColumns._ID + " = ?", args) == 0) {
+            return -1;
+        }
+        // The primary key index counts the movies before this one without reading them.
+        return (int)
+                DatabaseUtils.queryNumEntries(db, TABLE_MOVIES, BaseColumns._ID + " < ?", args);
+    }
+
+    /**
+     * Writes a batch of changes in a single transaction. The triggers keep the FTS index in sync
+     * with each changed row.
+     *
+     * @param batch The changes to write.
+     * @throws SQLException If the batch could not be written, in which case nothing was.
+     */
+    void applyBatch(MovieBatch batch) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            for (Map.Entry<Integer, Movie> change : batch.getChanges().entrySet()) {
+                String[] id = {String.valueOf(change.getKey())};
+                db.delete(TABLE_RENDITIONS, KEY_MOVIE_ID + " = ?", id);
+                if (change.getValue() == null) {
+                    db.delete(TABLE_MOVIES, BaseColumns._ID + " = ?", id);
+                    continue;
+                }
+                // Not a REPLACE, which would delete the row without firing the delete trigger.
+                ContentValues values = toContentValues(change.getValue());
+                if (db.update(TABLE_MOVIES, values, BaseColumns._ID + " = ?", id) == 0
+                        && db.insert(TABLE_MOVIES, null, values) == -1) {
+                    throw new SQLException("Cannot insert movie " + change.getKey());
+                }
+                insertRenditions(db, change.getValue());
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Queries search suggestions. The returned cursor has the same columns as the in-memory
+     * suggestions of {@link VideoContentProvider} and reads its rows lazily from disk.
+     *
+     * @param query Search string.
+     * @param limit Maximum number of rows, or a negative value for no limit.
+     * @param projection Columns to select, or null for all of them. Other columns are not read.
+     * @return A cursor of search suggestions.
+     * @throws IllegalArgumentException If the projection has an unknown column.
+     */
+    public Cursor querySuggestions(String query, int limit, String[] projection) {
+        String match = toMatchExpression(query);
+        StringBuilder sql = new StringBuilder("SELECT ");
+        appendSuggestionColumns(sql, projection);
+        sql.append(" FROM ").append(TABLE_MOVIES);
+        String[] args = null;
+        if (match != null) {
+            sql.append(" JOIN ").append(TABLE_MOVIES_FTS)
+                    .append(" ON ").append(TABLE_MOVIES_FTS).append(".docid = ")
+                    .append(TABLE_MOVIES).append('.').append(BaseColumns._ID)
+                    .append(" WHERE ").append(TABLE_MOVIES_FTS).append(" MATCH ?");
+            args = new String[] {match};
+        }
+        if (limit >= 0) {
+            sql.append(" LIMIT ").append(limit);
+        }
+        return getReadableDatabase().rawQuery(sql.toString(), args);
+    }
+
+    private static void appendSuggestionColumns(StringBuilder sql, String[] projection) {
+        List<String> columns = Arrays.asList(MovieSuggestionCursor.COLUMNS);
+        int count = projection != null ? projection.length : columns.size();
+        for (int i = 0; i < count; i++) {
+            int column = projection != null ? columns.indexOf(projection[i]) : i;
+            if (column < 0) {
+                throw new IllegalArgumentException("Unknown column: " + projection[i]);
+            }
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(SUGGESTION_EXPRESSIONS[column]);
+        }
+    }
+
+    /**
+     * Converts a free form query into an FTS expression where every word is a prefix term.
+     *
+     * @return The expression, or null if the query has no words.
+     */
+    private static String toMatchExpression(String query) {
+        StringBuilder match = new StringBuilder();
+        for (String term : query.split("[^\\p{L}\\p{N}]+")) {
+            if (!term.isEmpty()) {
+                if (match.length() > 0) {
+                    match.append(' ');
+                }
+                match.append(term).append('*');
+            }
+        }
+        return match.length() > 0 ? match.toString() : null;
+    }
+
+    private static ContentValues toContentValues(Movie movie) {
+        ContentValues values = new ContentValues();
+        values.put(BaseColumns._ID, movie.getId());
+        values.put(MockDatabase.KEY_NAME, movie.getTitle());
+        values.put(MockDatabase.KEY_DESCRIPTION, movie.getDescription());
+        values.put(MockDatabase.KEY_ICON, movie.getCardImage());
+        values.put(KEY_BACKGROUND_IMAGE, movie.getBackgroundImage());
+        values.put(KEY_VIDEO_URL, movie.getVideoUrl());
+        values.put(MockDatabase.KEY_DATA_TYPE, movie.getContentType());
+        values.put(MockDatabase.KEY_IS_LIVE, movie.isLive() ? 1 : 0);
+        values.put(MockDatabase.KEY_VIDEO_WIDTH, movie.getWidth());
+        values.put(MockDatabase.KEY_VIDEO_HEIGHT, movie.getHeight());
+        values.put(MockDatabase.KEY_AUDIO_CHANNEL_CONFIG, movie.getAudioChannelConfig());
+        values.put(MockDatabase.KEY_PURCHASE_PRICE, movie.getPurchasePrice());
+        values.put(MockDatabase.KEY_RENTAL_PRICE, movie.getRentalPrice());
+        values.put(MockDatabase.KEY_RATING_STYLE, movie.getRatingStyle());
+        values.put(MockDatabase.KEY_RATING_SCORE, movie.getRatingScore());
+        values.put(MockDatabase.KEY_PRODUCTION_YEAR, movie.getProductionYear());
+        values.put(MockDatabase.KEY_COLUMN_DURATION, movie.getDuration());
+        values.put(KEY_PRICE_VALUE, MovieQuery.getKey(movie, MovieQuery.KEY_PRICE));
+        return values;
+    }
+
+    private static void insertRenditions(SQLiteDatabase db, Movie movie) {
+        if (movie.getRenditions() == null) {
+            return;
+        }
+        for (Rendition rendition : movie.getRenditions()) {
+            ContentValues values = new ContentValues();
+            values.put(KEY_MOVIE_ID, movie.getId());
+            values.put(KEY_URL, rendition.getUrl());
+            values.put(KEY_WIDTH, rendition.getWidth());
+            values.put(KEY_HEIGHT, rendition.getHeight());
+            values.put(KEY_BITRATE, rendition.getBitrate());
+            if (db.insert(TABLE_RENDITIONS, null, values) == -1) {
+                throw new SQLException("Cannot insert a rendition of movie " + movie.getId());
+            }
+        }
+    }
+
+    /** Reads the movies of a cursor and closes it, then reads their renditions. */
+    private List<Movie> readMovies(Cursor cursor) {
+        Map<Integer, MovieBuilder> builders = new LinkedHashMap<>(cursor.getCount());
+        try {
+            while (cursor.moveToNext()) {
+                MovieBuilder builder = readMovie(cursor);
+                builders.put(cursor.getInt(cursor.getColumnIndexOrThrow(BaseColumns._ID)), builder);
+            }
+        } finally {
+            cursor.close();
+        }
+        readRenditions(builders);
+        List<Movie> movies = new ArrayList<>(builders.size());
+        for (MovieBuilder builder : builders.values()) {
+            movies.add(builder.createMovie());
+        }
+        return movies;
+    }
+
+    /** Adds the renditions of every movie, a few hundred movies per query. */
+    private void readRenditions(Map<Integer, MovieBuilder> builders) {
+        List<Integer> ids = new ArrayList<>(builders.keySet());
+        for (int start = 0; start < ids.size(); start += RENDITION_QUERY_BATCH) {
+            List<Integer> batch =
+                    ids.subList(start, Math.min(start + RENDITION_QUERY_BATCH, ids.size()));
+            StringBuilder selection = new StringBuilder(KEY_MOVIE_ID).append(" IN (");
+            String[] args = new String[batch.size()];
+            for (int i = 0; i < args.length; i++) {
+                selection.append(i > 0 ? ", ?" : "?");
+                args[i] = String.valueOf(batch.get(i));
+            }
+            selection.append(')');
+            Cursor cursor =
+                    getReadableDatabase()
+                            .query(
+                                    TABLE_RENDITIONS,
+                                    null,
+                                    selection.toString(),
+                                    args,
+                                    null,
+                                    null,
+                                    BaseColumns._ID);
+            try {
+                while (cursor.moveToNext()) {
+                    builders.get(cursor.getInt(cursor.getColumnIndexOrThrow(KEY_MOVIE_ID)))
+                            .addRendition(
+                                    new Rendition(
+                                            cursor.getString(cursor.getColumnIndexOrThrow(KEY_URL)),
+                                            cursor.getInt(cursor.getColumnIndexOrThrow(KEY_WIDTH)),
+                                            cursor.getInt(cursor.getColumnIndexOrThrow(KEY_HEIGHT)),
+                                            cursor.getInt(
+                                                    cursor.getColumnIndexOrThrow(KEY_BITRATE))));
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+    }
+
+    private static MovieBuilder readMovie(Cursor cursor) {
+        return new MovieBuilder()
+                .setId(cursor.getInt(cursor.getColumnIndexOrThrow(BaseColumns._ID)))
+                .setTitle(cursor.getString(cursor.getColumnIndexOrThrow(MockDatabase.KEY_NAME)))
+                .setDescription(
+                        cursor.getString(
+                                cursor.getColumnIndexOrThrow(MockDatabase.KEY_DESCRIPTION)))
+                .setCardImage(cursor.getString(cursor.getColumnIndexOrThrow(MockDatabase.KEY_ICON)))
+                .setBackgroundImage(
+                        cursor.getString(cursor.getColumnIndexOrThrow(KEY_BACKGROUND_IMAGE)))
+                .setVideoUrl(cursor.getString(cursor.getColumnIndexOrThrow(KEY_VIDEO_URL)))
+                .setContentType(
+                        cursor.getString(cursor.getColumnIndexOrThrow(MockDatabase.KEY_DATA_TYPE)))
+                .setLive(cursor.getInt(cursor.getColumnIndexOrThrow(MockDatabase.KEY_IS_LIVE)) == 1)
+                .setWidth(cursor.getInt(cursor.getColumnIndexOrThrow(MockDatabase.KEY_VIDEO_WIDTH)))
+                .setHeight(
+                        cursor.getInt(cursor.getColumnIndexOrThrow(MockDatabase.KEY_VIDEO_HEIGHT)))
+                .setAudioChannelConfig(
+                        cursor.getString(
+                                cursor.getColumnIndexOrThrow(
+                                        MockDatabase.KEY_AUDIO_CHANNEL_CONFIG)))
+                .setPurchasePrice(
+                        cursor.getString(
+                                cursor.getColumnIndexOrThrow(MockDatabase.KEY_PURCHASE_PRICE)))
+                .setRentalPrice(
+                        cursor.getString(
+                                cursor.getColumnIndexOrThrow(MockDatabase.KEY_RENTAL_PRICE)))
+                .setRatingStyle(
+                        cursor.getInt(cursor.getColumnIndexOrThrow(MockDatabase.KEY_RATING_STYLE)))
+                .setRatingScore(
+                        cursor.getDouble(
+                                cursor.getColumnIndexOrThrow(MockDatabase.KEY_RATING_SCORE)))
+                .setProductionYear(
+                        cursor.getInt(
+                                cursor.getColumnIndexOrThrow(MockDatabase.KEY_PRODUCTION_YEAR)))
+                .setDuration(
+                        cursor.getInt(
+                                cursor.getColumnIndexOrThrow(MockDatabase.KEY_COLUMN_DURATION)));
+    }
+}
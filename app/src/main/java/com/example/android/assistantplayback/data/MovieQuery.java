@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.assistantplayback.data;
+
+import android.net.Uri;
+import android.text.TextUtils;
+
+import com.example.android.assistantplayback.model.Movie;
+
+import java.util.Arrays;
+
+/**
+ * Filters and sort order of a query on the movies uri of {@link VideoContentProvider}. <br>
+ * Filters are query parameters of the uri, for example {@code
+ * movies?min_year=2000&max_price=9.99&live=0}. The sort order is a column name followed by an
+ * optional ASC or DESC, for example {@code suggest_production_year DESC}.
+ */
+final class MovieQuery {
+
+    static final int KEY_PRODUCTION_YEAR = 0;
+    static final int KEY_RATING_SCORE = 1;
+    static final int KEY_DURATION = 2;
+    static final int KEY_PRICE = 3;
+    static final int KEY_LIVE = 4;
+    static final int KEY_COUNT = 5;
+
+    // Uri parameters of the bounds of each key, indexed by key.
+    private static final String[] MIN_PARAMETERS = {
+        "min_year", "min_rating", "min_duration", "min_price", null
+    };
+    private static final String[] MAX_PARAMETERS = {
+        "max_year", "max_rating", "max_duration", "max_price", null
+    };
+    private static final String PARAMETER_LIVE = "live";
+    private static final String PARAMETER_LIMIT = "limit";
+
+    // Columns a query can be sorted by, indexed by key.
+    private static final String[] SORT_COLUMNS = {
+        MockDatabase.KEY_PRODUCTION_YEAR,
+        MockDatabase.KEY_RATING_SCORE,
+        MockDatabase.KEY_COLUMN_DURATION,
+        MockDatabase.KEY_PURCHASE_PRICE,
+        MockDatabase.KEY_IS_LIVE
+    };
+
+    // Inclusive bounds of each key, only meaningful where filtered is set.
+    final double[] min = new double[KEY_COUNT];
+    final double[] max = new double[KEY_COUNT];
+    final boolean[] filtered = new boolean[KEY_COUNT];
+
+    /** Key to sort by, or -1 to keep the order of the catalog. */
+    int sortKey = -1;
+
+    boolean descending;
+    int limit = Integer.MAX_VALUE;
+
+    MovieQuery() {
+        Arrays.fill(min, Double.NEGATIVE_INFINITY);
+        // A finite bound leaves out movies whose key is unknown, see getKey.
+        Arrays.fill(max, Double.MAX_VALUE);
+    }
+
+    /**
+     * Reads a query from a uri and a sort order.
+     *
+     * @throws IllegalArgumentException If a parameter or the sort order is invalid.
+     */
+    static MovieQuery fromUri(Uri uri, String sortOrder) {
+        MovieQuery query = new MovieQuery();
+        for (int key = 0; key < KEY_COUNT; key++) {
+            if (MIN_PARAMETERS[key] != null) {
+                query.readBound(uri, MIN_PARAMETERS[key], key, true);
+                query.readBound(uri, MAX_PARAMETERS[key], key, false);
+            }
+        }
+        String live = uri.getQueryParameter(PARAMETER_LIVE);
+        if (live != null) {
+            double value = "1".equals(live) || "true".equals(live) ? 1 : 0;
+            query.min[KEY_LIVE] = value;
+            query.max[KEY_LIVE] = value;
+            query.filtered[KEY_LIVE] = true;
+        }
+        String limit = uri.getQueryParameter(PARAMETER_LIMIT);
+        if (limit != null) {
+            query.limit = Math.max(0, (int) parse(PARAMETER_LIMIT, limit));
+        }
+        if (!TextUtils.isEmpty(sortOrder)) {
+            query.readSortOrder(sortOrder.trim());
+        }
+        return query;
+    }
+
+    /**
+     * Returns the value of a key for a movie.
+     *
+     * @return The value, or positive infinity if the movie has no value for the key.
+     */
+    static double getKey(Movie movie, int key) {
+        switch (key) {
+            case KEY_PRODUCTION_YEAR:
+                return movie.getProductionYear();
+            case KEY_RATING_SCORE:
+                return movie.getRatingScore();
+            case KEY_DURATION:
+                return movie.getDuration();
+            case KEY_PRICE:
+                return parsePrice(movie.getPurchasePrice());
+            case KEY_LIVE:
+                return movie.isLive() ? 1 : 0;
+            default:
+                throw new IllegalArgumentException("Unknown key: " + key);
+        }
+    }
+
+    /**
+     * Parses prices like "$8.99", ignoring the currency.
+     *
+     * @return The price, or positive infinity if there is none.
+     */
+    static double parsePrice(String price) {
+        if (price == null) {
+            return Double.POSITIVE_INFINITY;
+        }
+        StringBuilder number = new StringBuilder(price.length());
+        for (int i = 0; i < price.length(); i++) {
+            char c = price.charAt(i);
+            if ((c >= '0' && c <= '9') || c == '.') {
+                number.append(c);
+            }
+        }
+        try {
+            return Double.parseDouble(number.toString());
+        } catch (NumberFormatException e) {
+            return Double.POSITIVE_INFINITY;
+        }
+    }
+
+    private void readBound(Uri uri, String parameter, int key, boolean lower) {
+        String value = uri.getQueryParameter(parameter);
+        if (value == null) {
+            return;
+        }
+        if (lower) {
+            min[key] = parse(parameter, value);
+        } else {
+            max[key] = parse(parameter, value);
+        }
+        filtered[key] = true;
+    }
+
+    private void readSortOrder(String sortOrder) {
+        String[] parts = sortOrder.split("\\s+");
+        if (parts.length > 2
+                || (parts.length == 2
+                        && !parts[1].equalsIgnoreCase("ASC")
+                        && !parts[1].equalsIgnoreCase("DESC"))) {
+            throw new IllegalArgumentException("Invalid sort order: " + sortOrder);
+        }
+        for (int key = 0; key < KEY_COUNT; key++) {
+            if (SORT_COLUMNS[key].equals(parts[0])) {
+                sortKey = key;
+            }
+        }
+        if (sortKey < 0) {
+            throw new IllegalArgumentException("Cannot sort by: " + parts[0]);
+        }
+        descending = parts.length == 2 && parts[1].equalsIgnoreCase("DESC");
+    }
+
+    private static double parse(String parameter, String value) {
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + parameter + ": " + value);
+        }
+    }
+}
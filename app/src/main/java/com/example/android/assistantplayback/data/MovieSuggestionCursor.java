@@ -0,0 +1,316 @@
+/*
+ * Copyright (c) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.assistantplayback.data;
+
+import android.app.SearchManager;
+import android.database.AbstractCursor;
+import android.database.CursorWindow;
+import android.provider.BaseColumns;
+
+import com.example.android.assistantplayback.model.Movie;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Exposes a list of movies as search suggestions. <br>
+ * Unlike a {@link android.database.MatrixCursor}, no row is copied up front. Each value is read
+ * from the {@link Movie} when it is requested, and since {@link AbstractCursor} is a {@link
+ * android.database.CrossProcessCursor}, the rows are only written into a {@link
+ * android.database.CursorWindow} when the search UI moves to them. Only the columns of the
+ * requested projection are exposed, so the others are never read. <br>
+ * The projection is resolved once per query into a plan of movie columns, and {@link
+ * #fillWindow(int, CursorWindow)} writes each value straight into the window with its own type,
+ * instead of asking for the type of every value and boxing it through the generic getters.
+ */
+class MovieSuggestionCursor extends AbstractCursor {
+
+    static final String[] COLUMNS =
+            new String[] {
+                BaseColumns._ID,
+                MockDatabase.KEY_NAME,
+                MockDatabase.KEY_DESCRIPTION,
+                MockDatabase.KEY_ICON,
+                MockDatabase.KEY_DATA_TYPE,
+                MockDatabase.KEY_IS_LIVE,
+                MockDatabase.KEY_VIDEO_WIDTH,
+                MockDatabase.KEY_VIDEO_HEIGHT,
+                MockDatabase.KEY_AUDIO_CHANNEL_CONFIG,
+                MockDatabase.KEY_PURCHASE_PRICE,
+                MockDatabase.KEY_RENTAL_PRICE,
+                MockDatabase.KEY_RATING_STYLE,
+                MockDatabase.KEY_RATING_SCORE,
+                MockDatabase.KEY_PRODUCTION_YEAR,
+                MockDatabase.KEY_COLUMN_DURATION,
+                MockDatabase.KEY_ACTION,
+                SearchManager.SUGGEST_COLUMN_INTENT_DATA_ID
+            };
+
+    // Indexes into COLUMNS.
+    private static final int COLUMN_ID = 0;
+    private static final int COLUMN_NAME = 1;
+    private static final int COLUMN_DESCRIPTION = 2;
+    private static final int COLUMN_ICON = 3;
+    private static final int COLUMN_DATA_TYPE = 4;
+    private static final int COLUMN_IS_LIVE = 5;
+    private static final int COLUMN_VIDEO_WIDTH = 6;
+    private static final int COLUMN_VIDEO_HEIGHT = 7;
+    private static final int COLUMN_AUDIO_CHANNEL_CONFIG = 8;
+    private static final int COLUMN_PURCHASE_PRICE = 9;
+    private static final int COLUMN_RENTAL_PRICE = 10;
+    private static final int COLUMN_RATING_STYLE = 11;
+    private static final int COLUMN_RATING_SCORE = 12;
+    private static final int COLUMN_PRODUCTION_YEAR = 13;
+    private static final int COLUMN_DURATION = 14;
+    private static final int COLUMN_ACTION = 15;
+    private static final int COLUMN_INTENT_DATA_ID = 16;
+
+    private static final String ACTION_GLOBAL_SEARCH = "GLOBALSEARCH";
+
+    private final List<Movie> mMovies;
+    private final String[] mColumnNames;
+
+    // Index into COLUMNS of each column of the projection, the plan used to fill windows.
+    private final int[] mColumns;
+
+    MovieSuggestionCursor(List<Movie> movies) {
+        this(movies, null);
+    }
+
+    /**
+     * @param movies The movies, one per row.
+     * @param projection Columns to expose, or null for all of {@link #COLUMNS}.
+     * @throws IllegalArgumentException If the projection has an unknown column.
+     */
+    MovieSuggestionCursor(List<Movie> movies, String[] projection) {
+        mMovies = movies;
+        mColumnNames = projection != null ? projection : COLUMNS;
+        mColumns = new int[mColumnNames.length];
+        for (int i = 0; i < mColumnNames.length; i++) {
+            mColumns[i] = Arrays.asList(COLUMNS).indexOf(mColumnNames[i]);
+            if (mColumns[i] < 0) {
+                throw new IllegalArgumentException("Unknown column: " + mColumnNames[i]);
+            }
+        }
+    }
+
+    @Override
+    public int getCount() {
+        return mMovies.size();
+    }
+
+    @Override
+    public String[] getColumnNames() {
+        return mColumnNames;
+    }
+
+    @Override
+    public int getType(int column) {
+        return getTypeOf(mColumns[column]);
+    }
+
+    @Override
+    public String getString(int column) {
+        return getStringOf(mColumns[column]);
+    }
+
+    @Override
+    public long getLong(int column) {
+        return getLongOf(mColumns[column]);
+    }
+
+    @Override
+    public int getInt(int column) {
+        return (int) getLong(column);
+    }
+
+    @Override
+    public short getShort(int column) {
+        return (short) getLong(column);
+    }
+
+    @Override
+    public double getDouble(int column) {
+        int movieColumn = mColumns[column];
+        if (movieColumn == COLUMN_RATING_SCORE) {
+            return currentMovie().getRatingScore();
+        }
+        return getTypeOf(movieColumn) == FIELD_TYPE_INTEGER
+                ? getLongOf(movieColumn)
+                : Double.parseDouble(getStringOf(movieColumn));
+    }
+
+    @Override
+    public float getFloat(int column) {
+        return (float) getDouble(column);
+    }
+
+    @Override
+    public boolean isNull(int column) {
+        return getType(column) == FIELD_TYPE_NULL;
+    }
+
+    @Override
+    public void fillWindow(int position, CursorWindow window) {
+        if (position < 0 || position >= mMovies.size()) {
+            return;
+        }
+        window.acquireReference();
+        try {
+            window.clear();
+            window.setStartPosition(position);
+            window.setNumColumns(mColumns.length);
+            for (int row = position; row < mMovies.size(); row++) {
+                if (!window.allocRow()) {
+                    return;
+                }
+                Movie movie = mMovies.get(row);
+                for (int column = 0; column < mColumns.length; column++) {
+                    if (!putValue(window, movie, mColumns[column], row, column)) {
+                        // The window is full, the row goes to the next window.
+                        window.freeLastRow();
+                        return;
+                    }
+                }
+            }
+        } finally {
+            window.releaseReference();
+        }
+    }
+
+    /** Writes a value of a movie into a window, returns false if the window is full. */
+    private static boolean putValue(
+            CursorWindow window, Movie movie, int movieColumn, int row, int column) {
+        switch (movieColumn) {
+            case COLUMN_ID:
+            case COLUMN_INTENT_DATA_ID:
+                return window.putLong(movie.getId(), row, column);
+            case COLUMN_IS_LIVE:
+                return window.putLong(movie.isLive() ? 1 : 0, row, column);
+            case COLUMN_VIDEO_WIDTH:
+                return window.putLong(movie.getWidth(), row, column);
+            case COLUMN_VIDEO_HEIGHT:
+                return window.putLong(movie.getHeight(), row, column);
+            case COLUMN_RATING_STYLE:
+                return window.putLong(movie.getRatingStyle(), row, column);
+            case COLUMN_RATING_SCORE:
+                return window.putDouble(movie.getRatingScore(), row, column);
+            case COLUMN_PRODUCTION_YEAR:
+                return window.putLong(movie.getProductionYear(), row, column);
+            case COLUMN_DURATION:
+                return window.putLong(movie.getDuration(), row, column);
+            case COLUMN_NAME:
+                return putString(window, movie.getTitle(), row, column);
+            case COLUMN_DESCRIPTION:
+                return putString(window, movie.getDescription(), row, column);
+            case COLUMN_ICON:
+                return putString(window, movie.getCardImage(), row, column);
+            case COLUMN_DATA_TYPE:
+                return putString(window, movie.getContentType(), row, column);
+            case COLUMN_AUDIO_CHANNEL_CONFIG:
+                return putString(window, movie.getAudioChannelConfig(), row, column);
+            case COLUMN_PURCHASE_PRICE:
+                return putString(window, movie.getPurchasePrice(), row, column);
+            case COLUMN_RENTAL_PRICE:
+                return putString(window, movie.getRentalPrice(), row, column);
+            case COLUMN_ACTION:
+                return putString(window, ACTION_GLOBAL_SEARCH, row, column);
+            default:
+                throw new IllegalArgumentException("Unknown column: " + movieColumn);
+        }
+    }
+
+    private static boolean putString(CursorWindow window, String value, int row, int column) {
+        return value == null ? window.putNull(row, column) : window.putString(value, row, column);
+    }
+
+    // The methods below take an index into COLUMNS instead of the projection.
+
+    private int getTypeOf(int column) {
+        switch (column) {
+            case COLUMN_ID:
+            case COLUMN_IS_LIVE:
+            case COLUMN_VIDEO_WIDTH:
+            case COLUMN_VIDEO_HEIGHT:
+            case COLUMN_RATING_STYLE:
+            case COLUMN_PRODUCTION_YEAR:
+            case COLUMN_DURATION:
+            case COLUMN_INTENT_DATA_ID:
+                return FIELD_TYPE_INTEGER;
+            case COLUMN_RATING_SCORE:
+                return FIELD_TYPE_FLOAT;
+            default:
+                return getStringOf(column) == null ? FIELD_TYPE_NULL : FIELD_TYPE_STRING;
+        }
+    }
+
+    private String getStringOf(int column) {
+        Movie movie = currentMovie();
+        switch (column) {
+            case COLUMN_NAME:
+                return movie.getTitle();
+            case COLUMN_DESCRIPTION:
+                return movie.getDescription();
+            case COLUMN_ICON:
+                return movie.getCardImage();
+            case COLUMN_DATA_TYPE:
+                return movie.getContentType();
+            case COLUMN_AUDIO_CHANNEL_CONFIG:
+                return movie.getAudioChannelConfig();
+            case COLUMN_PURCHASE_PRICE:
+                return movie.getPurchasePrice();
+            case COLUMN_RENTAL_PRICE:
+                return movie.getRentalPrice();
+            case COLUMN_ACTION:
+                return ACTION_GLOBAL_SEARCH;
+            case COLUMN_RATING_SCORE:
+                return String.valueOf(movie.getRatingScore());
+            default:
+                return String.valueOf(getLongOf(column));
+        }
+    }
+
+    private long getLongOf(int column) {
+        Movie movie = currentMovie();
+        switch (column) {
+            case COLUMN_ID:
+            case COLUMN_INTENT_DATA_ID:
+                return movie.getId();
+            case COLUMN_IS_LIVE:
+                return movie.isLive() ? 1 : 0;
+            case COLUMN_VIDEO_WIDTH:
+                return movie.getWidth();
+            case COLUMN_VIDEO_HEIGHT:
+                return movie.getHeight();
+            case COLUMN_RATING_STYLE:
+                return movie.getRatingStyle();
+            case COLUMN_RATING_SCORE:
+                return (long) movie.getRatingScore();
+            case COLUMN_PRODUCTION_YEAR:
+                return movie.getProductionYear();
+            case COLUMN_DURATION:
+                return movie.getDuration();
+            default:
+                return Long.parseLong(getStringOf(column));
+        }
+    }
+
+    private Movie currentMovie() {
+        checkPosition();
+        return mMovies.get(getPosition());
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.assistantplayback.data;
+
+import android.content.ContentValues;
+import android.provider.BaseColumns;
+
+import com.example.android.assistantplayback.model.Movie;
+import com.example.android.assistantplayback.model.MovieBuilder;
+import com.example.android.assistantplayback.model.Rendition;
+
+/**
+ * Converts the {@link ContentValues} written to {@link VideoContentProvider} into movies. The
+ * keys are the columns of the suggestions, plus the background image and video url columns of
+ * {@link MovieCatalogStore}.
+ */
+final class MovieValues {
+
+    private MovieValues() {}
+
+    /**
+     * Builds a movie out of values.
+     *
+     * @param values The values to set.
+     * @param base The movie being updated, or null for a new movie.
+     * @return A new movie with the fields of the base, replaced by the values.
+     * @throws IllegalArgumentException If a key is unknown, a new movie has no id or title, or
+     *     the id of an existing movie changes.
+     */
+    static Movie toMovie(ContentValues values, Movie base) {
+        MovieBuilder builder = base != null ? toBuilder(base) : new MovieBuilder();
+        if (base == null
+                && (values.getAsInteger(BaseColumns._ID) == null
+                        || values.getAsString(MockDatabase.KEY_NAME) == null)) {
+            throw new IllegalArgumentException("A new movie needs an id and a title: " + values);
+        }
+        for (String key : values.keySet()) {
+            switch (key) {
+                case BaseColumns._ID:
+                    int id = getInt(values, key);
+                    if (base != null && id != base.getId()) {
+                        throw new IllegalArgumentException(
+                                "Cannot change the id of movie " + base.getId());
+                    }
+                    builder.setId(id);
+                    break;
+                case MockDatabase.KEY_NAME:
+                    builder.setTitle(values.getAsString(key));
+                    break;
+                case MockDatabase.KEY_DESCRIPTION:
+                    builder.setDescription(values.getAsString(key));
+                    break;
+                case MockDatabase.KEY_ICON:
+                    builder.setCardImage(values.getAsString(key));
+                    break;
+                case MovieCatalogStore.KEY_BACKGROUND_IMAGE:
+                    builder.setBackgroundImage(values.getAsString(key));
+                    break;
+                case MovieCatalogStore.KEY_VIDEO_URL:
+                    builder.setVideoUrl(values.getAsString(key));
+                    break;
+                case MockDatabase.KEY_DATA_TYPE:
+                    builder.setContentType(values.getAsString(key));
+                    break;
+                case MockDatabase.KEY_IS_LIVE:
+                    Boolean live = values.getAsBoolean(key);
+                    builder.setLive(live != null && live);
+                    break;
+                case MockDatabase.KEY_VIDEO_WIDTH:
+                    builder.setWidth(getInt(values, key));
+                    break;
+                case MockDatabase.KEY_VIDEO_HEIGHT:
+                    builder.setHeight(getInt(values, key));
+                    break;
+                case MockDatabase.KEY_AUDIO_CHANNEL_CONFIG:
+                    builder.setAudioChannelConfig(values.getAsString(key));
+                    break;
+                case MockDatabase.KEY_PURCHASE_PRICE:
+                    builder.setPurchasePrice(values.getAsString(key));
+                    break;
+                case MockDatabase.KEY_RENTAL_PRICE:
+                    builder.setRentalPrice(values.getAsString(key));
+                    break;
+                case MockDatabase.KEY_RATING_STYLE:
+                    builder.setRatingStyle(getInt(values, key));
+                    break;
+                case MockDatabase.KEY_RATING_SCORE:
+                    Double ratingScore = values.getAsDouble(key);
+                    if (ratingScore == null) {
+                        throw new IllegalArgumentException("Invalid " + key + ": " + values);
+                    }
+                    builder.setRatingScore(ratingScore);
+                    break;
+                case MockDatabase.KEY_PRODUCTION_YEAR:
+                    builder.setProductionYear(getInt(values, key));
+                    break;
+                case MockDatabase.KEY_COLUMN_DURATION:
+                    builder.setDuration(getInt(values, key));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown column: " + key);
+            }
+        }
+        return builder.createMovie();
+    }
+
+    private static int getInt(ContentValues values, String key) {
+        Integer value = values.getAsInteger(key);
+        if (value == null) {
+            throw new IllegalArgumentException("Invalid " + key + ": " + values);
+        }
+        return value;
+    }
+
+    private static MovieBuilder toBuilder(Movie movie) {
+        MovieBuilder builder =
+                new MovieBuilder()
+                        .setId(movie.getId())
+                        .setTitle(movie.getTitle())
+                        .setDescription(movie.getDescription())
+                        .setCardImage(movie.getCardImage())
+                        .setBackgroundImage(movie.getBackgroundImage())
+                        .setVideoUrl(movie.getVideoUrl())
+                        .setContentType(movie.getContentType())
+                        .setLive(movie.isLive())
+                        .setWidth(movie.getWidth())
+                        .setHeight(movie.getHeight())
+                        .setAudioChannelConfig(movie.getAudioChannelConfig())
+                        .setPurchasePrice(movie.getPurchasePrice())
+                        .setRentalPrice(movie.getRentalPrice())
+                        .setRatingStyle(movie.getRatingStyle())
+                        .setRatingScore(movie.getRatingScore())
+                        .setProductionYear(movie.getProductionYear())
+                        .setDuration(movie.getDuration());
+        if (movie.getRenditions() != null) {
+            for (Rendition rendition : movie.getRenditions()) {
+                builder.addRendition(rendition);
+            }
+        }
+        return builder;
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.assistantplayback.data;
+
+/**
+ * Maps the packed trigrams of {@link SearchIndex} to their posting lists. <br>
+ * Open addressing hash map with linear probing over a primitive key array, like {@link
+ * IdIndexMap}, so looking up or adding a gram never boxes it into a {@code Long}.
+ */
+final class PostingMap {
+
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] keys;
+    private PostingList[] values;
+    private int size;
+    private int mask;
+
+    PostingMap() {
+        allocate(MIN_CAPACITY);
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the posting list of a gram.
+     *
+     * @param gram The packed gram.
+     * @return The list, or null if no movie has the gram.
+     */
+    PostingList get(long gram) {
+        for (int slot = slotOf(gram); values[slot] != null; slot = (slot + 1) & mask) {
+            if (keys[slot] == gram) {
+                return values[slot];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the posting list of a gram, adding an empty one if there is none.
+     *
+     * @param gram The packed gram.
+     * @return The list of the gram.
+     */
+    PostingList getOrAdd(long gram) {
+        int slot = slotOf(gram);
+        while (values[slot] != null) {
+            if (keys[slot] == gram) {
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        PostingList list = new PostingList();
+        keys[slot] = gram;
+        values[slot] = list;
+        if (++size > keys.length * 3 / 4) {
+            rehash(keys.length * 2);
+        }
+        return list;
+    }
+
+    /**
+     * Removes the posting list of a gram.
+     *
+     * @param gram The packed gram.
+     */
+    void remove(long gram) {
+        int slot = slotOf(gram);
+        while (values[slot] != null && keys[slot] != gram) {
+            slot = (slot + 1) & mask;
+        }
+        if (values[slot] == null) {
+            return;
+        }
+
+        // Shift the following entries of the probe run back so lookups never hit a hole.
+        int hole = slot;
+        for (int next = (hole + 1) & mask; values[next] != null; next = (next + 1) & mask) {
+            int home = slotOf(keys[next]);
+            boolean movable =
+                    hole <= next ? (home <= hole || home > next) : (home <= hole && home > next);
+            if (movable) {
+                keys[hole] = keys[next];
+                values[hole] = values[next];
+                hole = next;
+            }
+        }
+        values[hole] = null;
+        size--;
+    }
+
+    private int slotOf(long gram) {
+        // Fibonacci hashing of the 64 bit key, folded so every char of the gram counts.
+        long hash = gram * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        PostingList[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != null) {
+                int slot = slotOf(oldKeys[i]);
+                while (values[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new PostingList[capacity];
+        mask = capacity - 1;
+    }
+}
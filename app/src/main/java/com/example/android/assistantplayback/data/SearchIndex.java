@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.assistantplayback.data;
+
+import com.example.android.assistantplayback.model.Movie;
+import com.example.android.assistantplayback.model.TextNormalizer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Trigram inverted index over the titles and descriptions of movies. <br>
+ * Every three character window of a movie's normalized title and description maps to a posting
+ * list of movie ids. A query is answered by intersecting the posting lists of its own trigrams and
+ * then confirming the substring match on the few remaining candidates, instead of lowercasing and
+ * scanning every movie in the catalog. Candidates are matched against the normalized text kept by
+ * each movie, so nothing is lowercased or allocated per candidate. Movies can be added and removed
+ * one at a time without rebuilding the index. <br>
+ * The index only holds ids, the movies themselves are resolved through the catalog.
+ */
+class SearchIndex {
+
+    private static final int GRAM_LENGTH = 3;
+
+    private final PostingMap postings = new PostingMap();
+
+    // Every indexed id, walked by queries too short to have a trigram.
+    private final PostingList allIds = new PostingList();
+
+    /**
+     * Indexes a movie.
+     *
+     * @param movie The movie to index.
+     */
+    void add(Movie movie) {
+        allIds.add(movie.getId());
+        addGrams(movie.getId(), movie.getNormalizedTitle());
+        addGrams(movie.getId(), movie.getNormalizedDescription());
+    }
+
+    /**
+     * Removes a movie from the index. The movie must still have the title and description it was
+     * indexed with.
+     *
+     * @param movie The movie to remove.
+     */
+    void remove(Movie movie) {
+        allIds.remove(movie.getId());
+        removeGrams(movie.getId(), movie.getNormalizedTitle());
+        removeGrams(movie.getId(), movie.getNormalizedDescription());
+    }
+
+    /**
+     * Finds the movies whose title or description contains the query, ignoring case and accents.
+     *
+     * @param query Search string.
+     * @param limit Maximum number of movies to return.
+     * @param catalog The indexed movies.
+     * @param idIndex Positions of the indexed movies in the catalog.
+     * @return The matching movies, ordered by id.
+     */
+    List<Movie> search(String query, int limit, List<Movie> catalog, IdIndexMap idIndex) {
+        char[] normalizedQuery = TextNormalizer.normalize(query);
+        List<Movie> results = new ArrayList<>();
+        if (normalizedQuery.length < GRAM_LENGTH) {
+            // Too short to have a trigram, every movie is a candidate, walked in id order.
+            for (int i = 0; i < allIds.size && results.size() < limit; i++) {
+                Movie movie = catalog.get(idIndex.get(allIds.ids[i]));
+                if (matches(movie, normalizedQuery)) {
+                    results.add(movie);
+                }
+            }
+            return results;
+        }
+
+        List<PostingList> lists = new ArrayList<>();
+        for (int start = 0; start + GRAM_LENGTH <= normalizedQuery.length; start++) {
+            PostingList list = postings.get(gramAt(normalizedQuery, start));
+            if (list == null) {
+                // No movie contains this trigram, so no movie can contain the query.
+                return results;
+            }
+            if (!lists.contains(list)) {
+                lists.add(list);
+            }
+        }
+
+        // Walk the shortest list and probe the others, so candidates are never copied and the
+        // walk stops as soon as enough movies matched.
+        PostingList shortest = lists.get(0);
+        for (PostingList list : lists) {
+            if (list.size < shortest.size) {
+                shortest = list;
+            }
+        }
+        lists.remove(shortest);
+        int[] from = new int[lists.size()];
+        for (int i = 0; i < shortest.size && results.size() < limit; i++) {
+            int id = shortest.ids[i];
+            if (containedInAll(lists, from, id)) {
+                Movie movie = catalog.get(idIndex.get(id));
+                if (matches(movie, normalizedQuery)) {
+                    results.add(movie);
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Checks that every list contains the id. Ids are probed in increasing order, so each list is
+     * only searched past the position where the previous id was found.
+     */
+    private static boolean containedInAll(List<PostingList> lists, int[] from, int id) {
+        for (int i = 0; i < lists.size(); i++) {
+            PostingList list = lists.get(i);
+            int index = Arrays.binarySearch(list.ids, from[i], list.size, id);
+            if (index < 0) {
+                from[i] = -index - 1;
+                return false;
+            }
+            from[i] = index + 1;
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether the title or description of a movie contains the query, without allocating.
+     *
+     * @param movie The movie to check.
+     * @param normalizedQuery The query, normalized with {@link TextNormalizer#normalize(String)}.
+     */
+    static boolean matches(Movie movie, char[] normalizedQuery) {
+        return TextNormalizer.contains(movie.getNormalizedTitle(), normalizedQuery)
+                || TextNormalizer.contains(movie.getNormalizedDescription(), normalizedQuery);
+    }
+
+    private void addGrams(int id, char[] text) {
+        for (int start = 0; start + GRAM_LENGTH <= text.length; start++) {
+            postings.getOrAdd(gramAt(text, start)).add(id);
+        }
+    }
+
+    private void removeGrams(int id, char[] text) {
+        for (int start = 0; start + GRAM_LENGTH <= text.length; start++) {
+            long gram = gramAt(text, start);
+            PostingList list = postings.get(gram);
+            if (list != null && list.remove(id) && list.size == 0) {
+                postings.remove(gram);
+            }
+        }
+    }
+
+    /** Packs the three chars starting at {@code start} into a single key. */
+    private static long gramAt(char[] text, int start) {
+        return ((long) text[start] << 32) | ((long) text[start + 1] << 16) | text[start + 2];
+    }
+}
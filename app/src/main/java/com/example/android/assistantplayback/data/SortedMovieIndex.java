@@ -0,0 +1,251 @@
+/*
+ * Copyright (c) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.assistantplayback.data;
+
+import com.example.android.assistantplayback.model.Movie;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Secondary indexes answering the filters and sort orders of a {@link MovieQuery}. <br>
+ * For every key, the catalog is kept in three primitive arrays: the sorted values of the key, the
+ * movie positions in the same order, and the rank of each movie in that order. A range filter is
+ * two binary searches, and the narrowest filtered range is the only part of the catalog that is
+ * walked. Other filters and the sort order are checked on ranks, without reading the movies. <br>
+ * When the catalog changes, only the changed movies are sorted, and merged into the arrays in a
+ * single pass per key.
+ */
+class SortedMovieIndex {
+
+    private int size;
+
+    // Indexed by key, then by rank.
+    private final double[][] sortedKeys = new double[MovieQuery.KEY_COUNT][];
+    private final int[][] sortedPositions = new int[MovieQuery.KEY_COUNT][];
+
+    // Indexed by key, then by position in the catalog.
+    private final int[][] ranks = new int[MovieQuery.KEY_COUNT][];
+
+    /** @param catalog The movies to index. */
+    SortedMovieIndex(List<Movie> catalog) {
+        for (int key = 0; key < MovieQuery.KEY_COUNT; key++) {
+            sortedKeys[key] = new double[0];
+            sortedPositions[key] = new int[0];
+        }
+        int[] positions = new int[catalog.size()];
+        for (int position = 0; position < positions.length; position++) {
+            positions[position] = position;
+        }
+        update(catalog, new int[0], positions);
+    }
+
+    /**
+     * Updates the index after the catalog changed.
+     *
+     * @param catalog The changed catalog.
+     * @param newPositions For every position of the catalog the index was last updated with, the
+     *     position of the same movie in the changed catalog, or -1 if the movie was removed or
+     *     replaced.
+     * @param changed Positions of the added and replaced movies in the changed catalog.
+     */
+    void update(List<Movie> catalog, int[] newPositions, int[] changed) {
+        int[] changedPositions = changed.clone();
+        // In position order, ties between changed movies keep catalog order once sorted by value.
+        Arrays.sort(changedPositions);
+        double[] changedValues = new double[changedPositions.length];
+        int newSize = catalog.size();
+        for (int key = 0; key < MovieQuery.KEY_COUNT; key++) {
+            for (int i = 0; i < changedPositions.length; i++) {
+                changedValues[i] = MovieQuery.getKey(catalog.get(changedPositions[i]), key);
+            }
+            int[] order = sortByValue(changedValues);
+
+            double[] keys = new double[newSize];
+            int[] positions = new int[newSize];
+            double[] oldKeys = sortedKeys[key];
+            int[] oldPositions = sortedPositions[key];
+            int rank = 0;
+            int next = 0;
+            for (int oldRank = 0; oldRank <= size; oldRank++) {
+                int position = oldRank < size ? newPositions[oldPositions[oldRank]] : -1;
+                if (oldRank < size && position < 0) {
+                    continue;
+                }
+                // Changed movies that sort before the next kept one go first.
+                while (next < order.length
+                        && (oldRank == size
+                                || isBefore(
+                                        changedValues[order[next]],
+                                        changedPositions[order[next]],
+                                        oldKeys[oldRank],
+                                        position))) {
+                    keys[rank] = changedValues[order[next]];
+                    positions[rank++] = changedPositions[order[next++]];
+                }
+                if (oldRank < size) {
+                    keys[rank] = oldKeys[oldRank];
+                    positions[rank++] = position;
+                }
+            }
+
+            int[] keyRanks = new int[newSize];
+            for (int i = 0; i < newSize; i++) {
+                keyRanks[positions[i]] = i;
+            }
+            sortedKeys[key] = keys;
+            sortedPositions[key] = positions;
+            ranks[key] = keyRanks;
+        }
+        size = newSize;
+    }
+
+    /**
+     * Runs a query.
+     *
+     * @param query The filters and sort order.
+     * @param catalog The catalog the index was built from.
+     * @return The matching movies, in the requested order.
+     */
+    List<Movie> query(MovieQuery query, List<Movie> catalog) {
+        // Turns every filter into a range of ranks, and picks the narrowest one to walk.
+        int[] from = new int[MovieQuery.KEY_COUNT];
+        int[] to = new int[MovieQuery.KEY_COUNT];
+        int driver = -1;
+        for (int key = 0; key < MovieQuery.KEY_COUNT; key++) {
+            if (query.filtered[key]) {
+                from[key] = lowerBound(sortedKeys[key], query.min[key]);
+                to[key] = upperBound(sortedKeys[key], query.max[key]);
+                if (driver < 0 || to[key] - from[key] < to[driver] - from[driver]) {
+                    driver = key;
+                }
+            }
+        }
+
+        List<Movie> results = new ArrayList<>();
+        if (driver < 0 || driver == query.sortKey) {
+            // Walking the sort key, the results come out in order and the walk can stop at the
+            // limit. Without a sort key, filters are checked in catalog order.
+            int key = query.sortKey;
+            int start = driver < 0 ? 0 : from[driver];
+            int end = driver < 0 ? size : to[driver];
+            for (int i = 0; i < end - start && results.size() < query.limit; i++) {
+                int rank = query.descending ? end - 1 - i : start + i;
+                int position = key < 0 ? rank : sortedPositions[key][rank];
+                if (matches(query, from, to, position)) {
+                    results.add(catalog.get(position));
+                }
+            }
+            return results;
+        }
+
+        int[] matched = new int[to[driver] - from[driver]];
+        int count = 0;
+        for (int rank = from[driver]; rank < to[driver]; rank++) {
+            int position = sortedPositions[driver][rank];
+            if (matches(query, from, to, position)) {
+                // Sorting the ranks in the sort key sorts the movies.
+                matched[count++] = query.sortKey < 0 ? position : ranks[query.sortKey][position];
+            }
+        }
+        Arrays.sort(matched, 0, count);
+        for (int i = 0; i < count && results.size() < query.limit; i++) {
+            int value = matched[query.descending ? count - 1 - i : i];
+            results.add(
+                    catalog.get(query.sortKey < 0 ? value : sortedPositions[query.sortKey][value]));
+        }
+        return results;
+    }
+
+    private boolean matches(MovieQuery query, int[] from, int[] to, int position) {
+        for (int key = 0; key < MovieQuery.KEY_COUNT; key++) {
+            if (query.filtered[key]) {
+                int rank = ranks[key][position];
+                if (rank < from[key] || rank >= to[key]) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Sorts the indexes of values by value, ties in index order. <br>
+     * Every value is replaced by its rank among the distinct values, and packed with its index into
+     * a long, so the sort runs on primitives instead of boxed indexes and a comparator.
+     *
+     * @return The indexes of the values, in ascending order of value.
+     */
+    private static int[] sortByValue(double[] values) {
+        double[] distinct = values.clone();
+        Arrays.sort(distinct);
+        int distinctCount = 0;
+        for (double value : distinct) {
+            if (distinctCount == 0 || Double.compare(value, distinct[distinctCount - 1]) != 0) {
+                distinct[distinctCount++] = value;
+            }
+        }
+        long[] packed = new long[values.length];
+        for (int i = 0; i < values.length; i++) {
+            long valueRank = Arrays.binarySearch(distinct, 0, distinctCount, values[i]);
+            packed[i] = valueRank << 32 | i;
+        }
+        Arrays.sort(packed);
+        int[] order = new int[values.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = (int) packed[i];
+        }
+        return order;
+    }
+
+    /** Orders movies by value, ties in catalog order. */
+    private static boolean isBefore(double value, int position, double otherValue, int other) {
+        int byValue = Double.compare(value, otherValue);
+        return byValue != 0 ? byValue < 0 : position < other;
+    }
+
+    /** Returns the first rank whose value is at least {@code value}. */
+    private static int lowerBound(double[] keys, double value) {
+        int low = 0;
+        int high = keys.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (keys[middle] < value) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /** Returns the first rank whose value is greater than {@code value}. */
+    private static int upperBound(double[] keys, double value) {
+        int low = 0;
+        int high = keys.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (keys[middle] <= value) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+}
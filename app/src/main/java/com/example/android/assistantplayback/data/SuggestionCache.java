@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.assistantplayback.data;
+
+import com.example.android.assistantplayback.model.Movie;
+import com.example.android.assistantplayback.model.TextNormalizer;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Remembers the ids of the movies matched by recent search queries, keyed by the normalized query.
+ * <br>
+ * A query is answered by the ranked, typo tolerant search, and falls back to the substring search
+ * when a partially typed word matches nothing there. Both results are cached, so a repeated query
+ * does not search again. <br>
+ * The assistant and the search box send a growing prefix of the same query for every keystroke.
+ * Since a movie that contains "jura" also contains "jur", a longer query that the ranked search
+ * does not match is answered by filtering the cached substring result of a shorter one instead of
+ * searching the whole catalog again. The cache is cleared whenever the catalog changes.
+ */
+class SuggestionCache {
+
+    private final MockDatabase mDatabase;
+    private final Map<String, CachedResult> mEntries;
+
+    private int mCatalogVersion;
+    private int mHitCount;
+    private int mMissCount;
+
+    /**
+     * @param database The catalog to search on a miss.
+     * @param maxSize Maximum number of queries to remember.
+     */
+    SuggestionCache(MockDatabase database, final int maxSize) {
+        mDatabase = database;
+        mEntries =
+                new LinkedHashMap<String, CachedResult>(16, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<String, CachedResult> eldest) {
+                        return size() > maxSize;
+                    }
+                };
+        mCatalogVersion = MockDatabase.getVersion();
+    }
+
+    /**
+     * Searches for at most {@code limit} movies that best match the query, reusing the results of
+     * earlier queries when possible.
+     *
+     * @param query Search string.
+     * @param limit Maximum number of movies to return.
+     * @return A list of movies that match the query string, best match first.
+     */
+    synchronized List<Movie> search(String query, int limit) {
+        int version = MockDatabase.getVersion();
+        if (version != mCatalogVersion) {
+            mEntries.clear();
+            mCatalogVersion = version;
+        }
+
+        String key = new String(TextNormalizer.normalize(query));
+        CachedResult entry = mEntries.get(key);
+        if (entry != null && entry.covers(limit)) {
+            mHitCount++;
+        } else {
+            entry = findRanked(key, limit);
+            if (entry == null) {
+                entry = findFromPrefix(key);
+            }
+            if (entry == null) {
+                entry = findSubstring(key, limit);
+            }
+        }
+        return MockDatabase.findMoviesWithIds(entry.ids, Math.min(limit, entry.ids.length));
+    }
+
+    /** Runs the ranked search, and caches its result if it matched anything. */
+    private CachedResult findRanked(String key, int limit) {
+        List<Movie> movies = mDatabase.rankedSearch(key, limit);
+        if (movies.isEmpty()) {
+            return null;
+        }
+        return cache(key, movies, limit, true);
+    }
+
+    /** Runs the substring search over the whole catalog, and caches its result. */
+    private CachedResult findSubstring(String key, int limit) {
+        return cache(key, mDatabase.search(key, limit), limit, false);
+    }
+
+    private CachedResult cache(String key, List<Movie> movies, int limit, boolean ranked) {
+        mMissCount++;
+        int[] ids = new int[movies.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = movies.get(i).getId();
+        }
+        CachedResult entry = new CachedResult(ids, ids.length < limit, ranked);
+        mEntries.put(key, entry);
+        return entry;
+    }
+
+    /**
+     * Builds the result of a query out of the result of its longest cached prefix. Only a
+     * complete substring result can be filtered, a truncated one may be missing matches of the
+     * longer query, and a ranked one holds movies that only match the prefix approximately.
+     */
+    private CachedResult findFromPrefix(String key) {
+        for (int length = key.length() - 1; length >= 0; length--) {
+            CachedResult prefix = mEntries.get(key.substring(0, length));
+            if (prefix != null && prefix.complete && !prefix.ranked) {
+                int[] ids = MockDatabase.filterMovieIds(prefix.ids, key);
+                CachedResult entry = new CachedResult(ids, true, false);
+                mEntries.put(key, entry);
+                mHitCount++;
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    synchronized int getHitCount() {
+        return mHitCount;
+    }
+
+    synchronized int getMissCount() {
+        return mMissCount;
+    }
+
+    synchronized int size() {
+        return mEntries.size();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "SuggestionCache{size="
+                + mEntries.size()
+                + ", hits="
+                + mHitCount
+                + ", misses="
+                + mMissCount
+                + "}";
+    }
+
+    private static final class CachedResult {
+
+        final int[] ids;
+
+        /** True if ids holds every match, false if the search stopped at its limit. */
+        final boolean complete;
+
+        /** True if ids are ranked search results, false if they are substring matches. */
+        final boolean ranked;
+
+        CachedResult(int[] ids, boolean complete, boolean ranked) {
+            this.ids = ids;
+            this.complete = complete;
+            this.ranked = ranked;
+        }
+
+        boolean covers(int limit) {
+            return complete || ids.length >= limit;
+        }
+    }
+}
@@ -18,19 +18,23 @@ package com.example.android.assistantplayback.data;
 
 import android.app.SearchManager;
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
+import android.content.ContentUris;
 import android.content.ContentValues;
+import android.content.OperationApplicationException;
 import android.content.UriMatcher;
 import android.database.Cursor;
-import android.database.MatrixCursor;
 import android.net.Uri;
-import android.provider.BaseColumns;
+import android.os.SystemClock;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.util.Log;
 
+import com.example.android.assistantplayback.R;
 import com.example.android.assistantplayback.model.Movie;
 
-import java.util.List;
+import java.util.ArrayList;
 
 /**
  * Provides global search on the app's movie catalog. The assistant will query this provider for
@@ -38,6 +42,17 @@ import java.util.List;
  * Note: If you provide WatchAction feeds to Google, then you do not need this class. You should
  * still handle the playback intent and media controls in your fragment. This class enables <a
  * href="https://developer.android.com/training/tv/discovery/searchable.html">on-device search.</a>.
+ * <br>
+ * The movies uri lists the catalog with the filters and sort orders described in {@link
+ * MovieQuery}, for example {@code movies?min_year=2000&max_price=9.99}. Movies are inserted into
+ * the movies uri, and updated or deleted through {@code movies/<id>}. The values use the column
+ * names of the suggestions. Writing requires the signature level WRITE_MOVIES permission declared
+ * in the manifest, reads stay open to global search. <br>
+ * {@link #bulkInsert} and {@link #applyBatch} collect their changes in a {@link MovieBatch} that is
+ * applied at once, with a single change notification. Changes only survive a restart of the app
+ * when the SQLite catalog is in use, otherwise the catalog starts over from the default movies.
+ * With the SQLite catalog, every query reads from the store, no copy of the catalog is kept in
+ * memory.
  */
 public class VideoContentProvider extends ContentProvider {
 
@@ -45,37 +60,40 @@ public class VideoContentProvider extends ContentProvider {
 
     private static final String AUTHORITY = "com.example.android.assistantplayback";
 
+    public static final Uri MOVIES_URI = Uri.parse("content://" + AUTHORITY + "/movies");
+
     private MockDatabase mDatabase;
+    private MovieCatalogStore mCatalogStore;
+    private SuggestionCache mSuggestionCache;
+
+    // The batch being collected by applyBatch on the calling thread.
+    private final ThreadLocal<MovieBatch> mPendingBatch = new ThreadLocal<>();
 
     // UriMatcher constant for search suggestions
     private static final int SEARCH_SUGGEST = 1;
 
-    private UriMatcher mUriMatcher;
+    // UriMatcher constant for filtered and sorted lists of movies
+    private static final int MOVIES = 2;
 
-    private final String[] queryProjection =
-            new String[] {
-                BaseColumns._ID,
-                MockDatabase.KEY_NAME,
-                MockDatabase.KEY_DESCRIPTION,
-                MockDatabase.KEY_ICON,
-                MockDatabase.KEY_DATA_TYPE,
-                MockDatabase.KEY_IS_LIVE,
-                MockDatabase.KEY_VIDEO_WIDTH,
-                MockDatabase.KEY_VIDEO_HEIGHT,
-                MockDatabase.KEY_AUDIO_CHANNEL_CONFIG,
-                MockDatabase.KEY_PURCHASE_PRICE,
-                MockDatabase.KEY_RENTAL_PRICE,
-                MockDatabase.KEY_RATING_STYLE,
-                MockDatabase.KEY_RATING_SCORE,
-                MockDatabase.KEY_PRODUCTION_YEAR,
-                MockDatabase.KEY_COLUMN_DURATION,
-                MockDatabase.KEY_ACTION,
-                SearchManager.SUGGEST_COLUMN_INTENT_DATA_ID
-            };
+    // UriMatcher constant for a single movie
+    private static final int MOVIE_ID = 3;
+
+    // Number of suggestions returned when the uri does not specify a limit.
+    private static final int DEFAULT_SUGGESTION_LIMIT = 50;
+
+    private UriMatcher mUriMatcher;
 
     @Override
     public boolean onCreate() {
         mDatabase = new MockDatabase();
+        mSuggestionCache =
+                new SuggestionCache(
+                        mDatabase,
+                        getContext().getResources().getInteger(R.integer.suggestion_cache_size));
+        if (getContext().getResources().getBoolean(R.bool.use_sqlite_catalog)) {
+            mCatalogStore = MovieCatalogStore.getInstance(getContext());
+            MockDatabase.setCatalogStore(mCatalogStore);
+        }
         mUriMatcher = buildUriMatcher();
         return true;
     }
@@ -88,6 +106,8 @@ public class VideoContentProvider extends ContentProvider {
                 AUTHORITY,
                 "/search/" + SearchManager.SUGGEST_URI_PATH_QUERY + "/*",
                 SEARCH_SUGGEST);
+        uriMatcher.addURI(AUTHORITY, "/movies", MOVIES);
+        uriMatcher.addURI(AUTHORITY, "/movies/#", MOVIE_ID);
         return uriMatcher;
     }
 
@@ -102,10 +122,19 @@ public class VideoContentProvider extends ContentProvider {
 
         Log.d(TAG, uri.toString());
 
-        if (mUriMatcher.match(uri) == SEARCH_SUGGEST) {
+        int match = mUriMatcher.match(uri);
+        if (match == SEARCH_SUGGEST) {
             Log.d(TAG, "Search suggestions requested.");
 
-            return search(uri.getLastPathSegment());
+            return search(uri.getLastPathSegment(), getSuggestionLimit(uri), projection);
+
+        } else if (match == MOVIES) {
+            if (selection != null) {
+                throw new IllegalArgumentException(
+                        "Filter movies with uri parameters, not a selection: " + selection);
+            }
+            MovieQuery movieQuery = MovieQuery.fromUri(uri, sortOrder);
+            return new MovieSuggestionCursor(MockDatabase.queryMovies(movieQuery), projection);
 
         } else {
             Log.d(TAG, "Unknown uri to query: " + uri);
@@ -113,39 +142,36 @@ public class VideoContentProvider extends ContentProvider {
         }
     }
 
-    private Cursor search(String query) {
-        List<Movie> results = mDatabase.search(query);
-
-        MatrixCursor matrixCursor = new MatrixCursor(queryProjection);
-        if (!results.isEmpty()) {
-            for (Movie movie : results) {
-                matrixCursor.addRow(convertMovieIntoRow(movie));
+    private static int getSuggestionLimit(Uri uri) {
+        String limit = uri.getQueryParameter(SearchManager.SUGGEST_PARAMETER_LIMIT);
+        if (limit != null) {
+            try {
+                return Math.max(0, Integer.parseInt(limit));
+            } catch (NumberFormatException e) {
+                Log.w(TAG, "Ignoring invalid suggestion limit: " + limit);
             }
         }
-
-        return matrixCursor;
+        return DEFAULT_SUGGESTION_LIMIT;
     }
 
-    private Object[] convertMovieIntoRow(Movie movie) {
-        return new Object[] {
-            movie.getId(),
-            movie.getTitle(),
-            movie.getDescription(),
-            movie.getCardImage(),
-            movie.getContentType(),
-            movie.isLive(),
-            movie.getWidth(),
-            movie.getHeight(),
-            movie.getAudioChannelConfig(),
-            movie.getPurchasePrice(),
-            movie.getRentalPrice(),
-            movie.getRatingStyle(),
-            movie.getRatingScore(),
-            movie.getProductionYear(),
-            movie.getDuration(),
-            "GLOBALSEARCH",
-            movie.getId()
-        };
+    private Cursor search(String query, int limit, String[] projection) {
+        long start = SystemClock.elapsedRealtime();
+        Cursor cursor;
+        if (mCatalogStore != null) {
+            cursor = mCatalogStore.querySuggestions(query, limit, projection);
+        } else {
+            // Whole words are ranked and tolerate typos from voice recognition, a partially
+            // typed word falls back to the substring search. Both are cached per query.
+            cursor = new MovieSuggestionCursor(mSuggestionCache.search(query, limit), projection);
+        }
+        // SQLite runs the query on the first call to getCount(), so count before timing.
+        cursor.getCount();
+        Log.d(
+                TAG,
+                "Search for \"" + query + "\" took "
+                        + (SystemClock.elapsedRealtime() - start) + "ms on the "
+                        + (mCatalogStore != null ? "SQLite" : "in-memory") + " catalog.");
+        return cursor;
     }
 
     @Nullable
@@ -157,20 +183,128 @@ public class VideoContentProvider extends ContentProvider {
     @Nullable
     @Override
     public Uri insert(@NonNull Uri uri, @Nullable ContentValues contentValues) {
-        throw new UnsupportedOperationException("Insert is not implemented.");
+        if (mUriMatcher.match(uri) != MOVIES || contentValues == null) {
+            throw new IllegalArgumentException("Cannot insert into: " + uri);
+        }
+        MovieBatch batch = startChanges();
+        Movie movie = MovieValues.toMovie(contentValues, null);
+        batch.put(movie);
+        commitChanges(batch);
+        return ContentUris.withAppendedId(MOVIES_URI, movie.getId());
     }
 
     @Override
-    public int delete(@NonNull Uri uri, @Nullable String s, @Nullable String[] strings) {
-        throw new UnsupportedOperationException("Delete is not implemented.");
+    public int bulkInsert(@NonNull Uri uri, @NonNull ContentValues[] values) {
+        if (mUriMatcher.match(uri) != MOVIES) {
+            throw new IllegalArgumentException("Cannot insert into: " + uri);
+        }
+        MovieBatch batch = startChanges();
+        for (ContentValues movieValues : values) {
+            batch.put(MovieValues.toMovie(movieValues, null));
+        }
+        commitChanges(batch);
+        return values.length;
+    }
+
+    @Override
+    public int delete(
+            @NonNull Uri uri, @Nullable String selection, @Nullable String[] selectionArgs) {
+        if (selection != null) {
+            throw new IllegalArgumentException("Selections are not supported: " + selection);
+        }
+        int match = mUriMatcher.match(uri);
+        MovieBatch batch = startChanges();
+        int count;
+        if (match == MOVIES) {
+            count = batch.removeAll();
+        } else if (match == MOVIE_ID) {
+            count = batch.remove(getMovieId(uri)) ? 1 : 0;
+        } else {
+            throw new IllegalArgumentException("Cannot delete: " + uri);
+        }
+        commitChanges(batch);
+        return count;
     }
 
     @Override
     public int update(
             @NonNull Uri uri,
             @Nullable ContentValues contentValues,
-            @Nullable String s,
-            @Nullable String[] strings) {
-        throw new UnsupportedOperationException("Update is not implemented.");
+            @Nullable String selection,
+            @Nullable String[] selectionArgs) {
+        if (mUriMatcher.match(uri) != MOVIE_ID || contentValues == null) {
+            throw new IllegalArgumentException("Cannot update: " + uri);
+        }
+        if (selection != null) {
+            throw new IllegalArgumentException("Selections are not supported: " + selection);
+        }
+        MovieBatch batch = startChanges();
+        Movie movie = batch.find(getMovieId(uri));
+        if (movie == null) {
+            return 0;
+        }
+        batch.put(MovieValues.toMovie(contentValues, movie));
+        commitChanges(batch);
+        return 1;
+    }
+
+    /**
+     * Applies the operations as one batch. The changes are collected while the operations run and
+     * only reach the catalog once they all succeeded, so a failing operation leaves the catalog
+     * untouched.
+     */
+    @NonNull
+    @Override
+    public ContentProviderResult[] applyBatch(
+            @NonNull ArrayList<ContentProviderOperation> operations)
+            throws OperationApplicationException {
+        MovieBatch batch = new MovieBatch();
+        mPendingBatch.set(batch);
+        ContentProviderResult[] results;
+        try {
+            results = super.applyBatch(operations);
+        } finally {
+            mPendingBatch.remove();
+        }
+        applyChanges(batch);
+        return results;
+    }
+
+    private static int getMovieId(Uri uri) {
+        try {
+            return Integer.parseInt(uri.getLastPathSegment());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid movie uri: " + uri);
+        }
+    }
+
+    /** Returns the batch of applyBatch, or a new batch for a single change. */
+    private MovieBatch startChanges() {
+        MovieBatch batch = mPendingBatch.get();
+        return batch != null ? batch : new MovieBatch();
+    }
+
+    /** Applies a batch, unless applyBatch applies it once all of its operations ran. */
+    private void commitChanges(MovieBatch batch) {
+        if (batch != mPendingBatch.get()) {
+            applyChanges(batch);
+        }
+    }
+
+    /**
+     * Applies a batch to the catalog, which writes it to the store when one is in use. A failed
+     * write leaves the catalog unchanged.
+     */
+    private void applyChanges(MovieBatch batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        long start = SystemClock.elapsedRealtime();
+        MockDatabase.applyBatch(batch);
+        Log.d(
+                TAG,
+                "Applied " + batch.getChanges().size() + " changes in "
+                        + (SystemClock.elapsedRealtime() - start) + "ms.");
+        getContext().getContentResolver().notifyChange(MOVIES_URI, null);
     }
 }
@@ -0,0 +1,198 @@
+/*
+ * Copyright (c) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.assistantplayback.data;
+
+import android.content.Context;
+import android.util.AtomicFile;
+import android.util.Log;
+import android.util.SparseLongArray;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Remembers where the user stopped watching each movie. <br>
+ * Positions are read from and written to memory, so looking one up never touches the disk. Writes
+ * are batched: the first change after a flush schedules a write of all the positions a few seconds
+ * later on a background thread, and {@link #flush()} writes them right away. The positions are
+ * loaded from disk on the same thread when the store is first used.
+ */
+public class WatchProgressStore {
+
+    private static final String TAG = "WatchProgressStore";
+
+    private static final String FILE_NAME = "watch_progress";
+    private static final long FLUSH_DELAY_SECONDS = 10;
+
+    private static WatchProgressStore sInstance;
+
+    private final AtomicFile mFile;
+    private final ScheduledExecutorService mExecutor =
+            Executors.newSingleThreadScheduledExecutor();
+    private final SparseLongArray mPositions = new SparseLongArray();
+
+    private boolean mFlushScheduled;
+
+    private final Runnable mWriteRunnable =
+            new Runnable() {
+                @Override
+                public void run() {
+                    write();
+                }
+            };
+
+    /**
+     * Returns the store of the app, loading it in the background the first time.
+     *
+     * @param context Any context of the app.
+     * @return The watch progress store.
+     */
+    public static synchronized WatchProgressStore getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new WatchProgressStore(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private WatchProgressStore(Context context) {
+        mFile = new AtomicFile(new File(context.getFilesDir(), FILE_NAME));
+        mExecutor.execute(
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        read();
+                    }
+                });
+    }
+
+    /**
+     * Returns the position where the user stopped watching a movie.
+     *
+     * @param movieId The id of the movie.
+     * @return The position in milliseconds, or 0 if the movie should start from the beginning.
+     */
+    public long getPosition(int movieId) {
+        synchronized (mPositions) {
+            return mPositions.get(movieId, 0);
+        }
+    }
+
+    /**
+     * Remembers where the user is in a movie. The position is written to disk with the next batch.
+     *
+     * @param movieId The id of the movie.
+     * @param positionMs The position in milliseconds, 0 forgets the position.
+     */
+    public void setPosition(int movieId, long positionMs) {
+        synchronized (mPositions) {
+            if (positionMs <= 0) {
+                if (mPositions.indexOfKey(movieId) < 0) {
+                    return;
+                }
+                mPositions.delete(movieId);
+            } else {
+                if (mPositions.get(movieId, 0) == positionMs) {
+                    return;
+                }
+                mPositions.put(movieId, positionMs);
+            }
+            if (!mFlushScheduled) {
+                mFlushScheduled = true;
+                mExecutor.schedule(mWriteRunnable, FLUSH_DELAY_SECONDS, TimeUnit.SECONDS);
+            }
+        }
+    }
+
+    /** Writes the positions to disk in the background without waiting for the next batch. */
+    public void flush() {
+        synchronized (mPositions) {
+            if (!mFlushScheduled) {
+                return;
+            }
+        }
+        mExecutor.execute(mWriteRunnable);
+    }
+
+    private void read() {
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(mFile.openRead());
+            int count = in.readInt();
+            synchronized (mPositions) {
+                for (int i = 0; i < count; i++) {
+                    int movieId = in.readInt();
+                    long position = in.readLong();
+                    // A position set before the file was loaded is more recent.
+                    if (mPositions.indexOfKey(movieId) < 0) {
+                        mPositions.put(movieId, position);
+                    }
+                }
+            }
+        } catch (FileNotFoundException e) {
+            // Nothing has been watched yet.
+        } catch (IOException e) {
+            Log.w(TAG, "Could not read watch progress", e);
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    // Ignored, the file was only read.
+                }
+            }
+        }
+    }
+
+    /** Writes the positions to disk. Runs on the executor, so writes never overlap. */
+    private void write() {
+        SparseLongArray positions;
+        synchronized (mPositions) {
+            if (!mFlushScheduled) {
+                // Already written by an earlier flush.
+                return;
+            }
+            mFlushScheduled = false;
+            positions = mPositions.clone();
+        }
+
+        FileOutputStream out = null;
+        try {
+            out = mFile.startWrite();
+            DataOutputStream data = new DataOutputStream(out);
+            data.writeInt(positions.size());
+            for (int i = 0; i < positions.size(); i++) {
+                data.writeInt(positions.keyAt(i));
+                data.writeLong(positions.valueAt(i));
+            }
+            data.flush();
+            mFile.finishWrite(out);
+            Log.d(TAG, "Wrote " + positions.size() + " positions");
+        } catch (IOException e) {
+            Log.w(TAG, "Could not write watch progress", e);
+            if (out != null) {
+                mFile.failWrite(out);
+            }
+        }
+    }
+}
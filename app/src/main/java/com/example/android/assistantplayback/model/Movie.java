@@ -19,6 +19,8 @@ package com.example.android.assistantplayback.model;
 import android.os.Parcel;
 import android.os.Parcelable;
 
+import java.util.List;
+
 /** Captures metadata about a movie. */
 public class Movie implements Parcelable {
 
@@ -39,6 +41,11 @@ public class Movie implements Parcelable {
     private double ratingScore;
     private int productionYear;
     private int duration;
+    private List<Rendition> renditions;
+
+    // Derived from the title and description, see TextNormalizer.
+    private char[] normalizedTitle;
+    private char[] normalizedDescription;
 
     /**
      * Use {@link MovieBuilder} to construct a movie.
@@ -59,6 +66,7 @@ public class Movie implements Parcelable {
      * @param ratingScore
      * @param productionYear
      * @param duration
+     * @param renditions
      */
     Movie(
             int id,
@@ -77,7 +85,8 @@ public class Movie implements Parcelable {
             int ratingStyle,
             double ratingScore,
             int productionYear,
-            int duration) {
+            int duration,
+            List<Rendition> renditions) {
         this.id = id;
         this.title = title;
         this.description = description;
@@ -95,6 +104,9 @@ public class Movie implements Parcelable {
         this.ratingScore = ratingScore;
         this.productionYear = productionYear;
         this.duration = duration;
+        this.renditions = renditions;
+        normalizedTitle = TextNormalizer.normalize(title);
+        normalizedDescription = TextNormalizer.normalize(description);
     }
 
     private Movie(Parcel in) {
@@ -115,6 +127,9 @@ public class Movie implements Parcelable {
         ratingScore = in.readDouble();
         productionYear = in.readInt();
         duration = in.readInt();
+        renditions = in.createTypedArrayList(Rendition.CREATOR);
+        normalizedTitle = TextNormalizer.normalize(title);
+        normalizedDescription = TextNormalizer.normalize(description);
     }
 
     public int getId() {
@@ -131,6 +146,7 @@ public class Movie implements Parcelable {
 
     public void setTitle(String title) {
         this.title = title;
+        normalizedTitle = TextNormalizer.normalize(title);
     }
 
     public String getDescription() {
@@ -139,6 +155,23 @@ public class Movie implements Parcelable {
 
     public void setDescription(String description) {
         this.description = description;
+        normalizedDescription = TextNormalizer.normalize(description);
+    }
+
+    /**
+     * Returns the title lowercased and without accents, computed once when the title is set. The
+     * array is shared and must not be modified.
+     */
+    public char[] getNormalizedTitle() {
+        return normalizedTitle;
+    }
+
+    /**
+     * Returns the description lowercased and without accents, computed once when the description
+     * is set. The array is shared and must not be modified.
+     */
+    public char[] getNormalizedDescription() {
+        return normalizedDescription;
     }
 
     public String getCardImage() {
@@ -253,6 +286,18 @@ public class Movie implements Parcelable {
         this.duration = duration;
     }
 
+    /**
+     * Returns the encodings of the video, from the lowest to the highest bitrate. A movie without
+     * renditions only has its {@link #getVideoUrl() video url}.
+     */
+    public List<Rendition> getRenditions() {
+        return renditions;
+    }
+
+    public void setRenditions(List<Rendition> renditions) {
+        this.renditions = renditions;
+    }
+
     @Override
     public int describeContents() {
         return 0;
@@ -277,6 +322,7 @@ public class Movie implements Parcelable {
         dest.writeDouble(ratingScore);
         dest.writeInt(productionYear);
         dest.writeInt(duration);
+        dest.writeTypedList(renditions);
     }
 
     public static final Creator<Movie> CREATOR =
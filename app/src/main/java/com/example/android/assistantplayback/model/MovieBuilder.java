@@ -16,6 +16,11 @@
 
 package com.example.android.assistantplayback.model;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
 /** Builds a {@link Movie} instance. */
 public class MovieBuilder {
     private int id;
@@ -35,6 +40,7 @@ public class MovieBuilder {
     private int productionYear;
     private int duration;
     private String videoUrl;
+    private final List<Rendition> renditions = new ArrayList<>();
 
     public MovieBuilder setId(int id) {
         this.id = id;
@@ -125,7 +131,21 @@ public class MovieBuilder {
         return videoUrl;
     }
 
+    public MovieBuilder addRendition(Rendition rendition) {
+        renditions.add(rendition);
+        return this;
+    }
+
     public Movie createMovie() {
+        List<Rendition> sortedRenditions = new ArrayList<>(renditions);
+        Collections.sort(
+                sortedRenditions,
+                new Comparator<Rendition>() {
+                    @Override
+                    public int compare(Rendition a, Rendition b) {
+                        return Integer.compare(a.getBitrate(), b.getBitrate());
+                    }
+                });
         return new Movie(
                 id,
                 title,
@@ -143,6 +163,7 @@ public class MovieBuilder {
                 ratingStyle,
                 ratingScore,
                 productionYear,
-                duration);
+                duration,
+                sortedRenditions);
     }
 }
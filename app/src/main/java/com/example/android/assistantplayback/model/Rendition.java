@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.assistantplayback.model;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+
+/** One encoding of the video of a movie, at a given size and bitrate. */
+public class Rendition implements Parcelable {
+
+    private final String url;
+    private final int width;
+    private final int height;
+    private final int bitrate;
+
+    /**
+     * @param url Url of the video.
+     * @param width Width of the video in pixels.
+     * @param height Height of the video in pixels.
+     * @param bitrate Average bitrate of the video in bits per second.
+     */
+    public Rendition(String url, int width, int height, int bitrate) {
+        this.url = url;
+        this.width = width;
+        this.height = height;
+        this.bitrate = bitrate;
+    }
+
+    private Rendition(Parcel in) {
+        url = in.readString();
+        width = in.readInt();
+        height = in.readInt();
+        bitrate = in.readInt();
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getBitrate() {
+        return bitrate;
+    }
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    @Override
+    public void writeToParcel(Parcel dest, int flags) {
+        dest.writeString(url);
+        dest.writeInt(width);
+        dest.writeInt(height);
+        dest.writeInt(bitrate);
+    }
+
+    public static final Creator<Rendition> CREATOR =
+            new Creator<Rendition>() {
+                @Override
+                public Rendition createFromParcel(Parcel in) {
+                    return new Rendition(in);
+                }
+
+                @Override
+                public Rendition[] newArray(int size) {
+                    return new Rendition[size];
+                }
+            };
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.assistantplayback.model;
+
+import java.text.Normalizer;
+import java.util.Arrays;
+
+/**
+ * Normalizes text for search, and matches normalized text. <br>
+ * Normalized text is lowercase and has its accents stripped, so "Pokémon" and "pokemon" match.
+ * Movies keep the normalized form of their title and description, so a search only normalizes the
+ * query and then compares char arrays without allocating anything per movie.
+ */
+public final class TextNormalizer {
+
+    private static final char[] EMPTY = new char[0];
+
+    private TextNormalizer() {}
+
+    /**
+     * Normalizes text.
+     *
+     * @param text The text to normalize, may be null.
+     * @return The lowercase text without accents, empty if the text is null.
+     */
+    public static char[] normalize(String text) {
+        if (text == null || text.isEmpty()) {
+            return EMPTY;
+        }
+        if (!isAscii(text)) {
+            // Splits accented letters into a letter and combining marks, which are dropped below.
+            text = Normalizer.normalize(text, Normalizer.Form.NFD);
+        }
+        char[] normalized = new char[text.length()];
+        int length = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.getType(c) != Character.NON_SPACING_MARK) {
+                normalized[length++] = Character.toLowerCase(c);
+            }
+        }
+        return length == normalized.length ? normalized : Arrays.copyOf(normalized, length);
+    }
+
+    /**
+     * Checks whether normalized text contains a normalized query.
+     *
+     * @param text Normalized text.
+     * @param query Normalized query.
+     * @return True if the query occurs in the text.
+     */
+    public static boolean contains(char[] text, char[] query) {
+        if (query.length == 0) {
+            return true;
+        }
+        char first = query[0];
+        int last = text.length - query.length;
+        for (int start = 0; start <= last; start++) {
+            if (text[start] != first) {
+                continue;
+            }
+            int i = 1;
+            while (i < query.length && text[start + i] == query[i]) {
+                i++;
+            }
+            if (i == query.length) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isAscii(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -18,22 +18,41 @@ package com.example.android.assistantplayback.playlist;
 
 import android.os.Bundle;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.support.v4.media.MediaDescriptionCompat;
 import android.support.v4.media.MediaMetadataCompat;
+import android.support.v4.media.session.MediaSessionCompat;
+import android.support.v4.media.session.PlaybackStateCompat;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
 
 /**
  * Converts a playlist of &lt;T&gt; into a playlist of {@link
- * android.support.v4.media.MediaDescriptionCompat}.
+ * android.support.v4.media.MediaDescriptionCompat}. <br>
+ * An item is only converted once, the description and metadata are cached by index until the item
+ * at that index is replaced or {@link #invalidate(int)} is called. The cache is an array indexed
+ * like the list, so a transport control only costs an array read once its item was converted. <br>
+ * The playlist can repeat and be shuffled. The shuffled order is a permutation of the indices of
+ * the items, generated once when shuffling is turned on, so the list itself is never copied.
  */
 public abstract class ListPlaylistAdapter<T> implements PlaylistAdapter {
 
     protected static final String EXTRA_BACKGROUND_ART = "extra_background_art";
 
     private final List<T> items;
+    private MappedItem<T>[] mappedItems;
+    private final Random random = new Random();
     private int activeIndex;
 
+    @PlaybackStateCompat.RepeatMode private int repeatMode = PlaybackStateCompat.REPEAT_MODE_NONE;
+
+    // Index of the item played at each position of the shuffled order, and its inverse.
+    private int[] shuffleOrder;
+    private int[] shufflePositions;
+
     /**
      * Creates a {@link ListPlaylistAdapter} of items that will be converted into a playlist of
      * {@link MediaDescriptionCompat}.
@@ -53,39 +72,238 @@ public abstract class ListPlaylistAdapter<T> implements PlaylistAdapter {
      */
     @Override
     public final MediaDescriptionCompat getCurrentItem() {
-        return map(items.get(activeIndex));
+        return getMappedItem(activeIndex).description;
     }
 
     /**
-     * Moves to the next item in the playlist. If there are no more items, then will return the
-     * current item.
+     * Returns the item after the current one without moving to it.
+     *
+     * @return The next item in the playlist, or null if the current item is the last one.
+     */
+    @Override
+    @Nullable
+    public final MediaDescriptionCompat peekNextItem() {
+        int nextIndex = getNextIndex();
+        return nextIndex == -1 ? null : getMappedItem(nextIndex).description;
+    }
+
+    /**
+     * Returns the metadata of the current item in the playlist.
+     *
+     * @return Current item in playlist as {@link MediaMetadataCompat}.
+     */
+    @NonNull
+    public final MediaMetadataCompat getCurrentMetadata() {
+        MappedItem<T> mapped = getMappedItem(activeIndex);
+        if (mapped.metadata == null) {
+            mapped.metadata = mapToMetadata(mapped.description);
+        }
+        return mapped.metadata;
+    }
+
+    /**
+     * Drops the cached description and metadata of an item, so they are converted again the next
+     * time they are needed. Should be called when an item changed without being replaced in the
+     * list.
+     *
+     * @param index The index of the item in the playlist.
+     */
+    public final void invalidate(int index) {
+        if (mappedItems != null && index < mappedItems.length) {
+            mappedItems[index] = null;
+        }
+    }
+
+    /** Drops the cached descriptions and metadata of all the items. */
+    public final void invalidateAll() {
+        if (mappedItems != null) {
+            Arrays.fill(mappedItems, null);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private MappedItem<T> getMappedItem(int index) {
+        T item = items.get(index);
+        if (mappedItems == null || index >= mappedItems.length) {
+            // Sized to the list, which only grows again if items were added to it.
+            int size = Math.max(items.size(), index + 1);
+            mappedItems =
+                    mappedItems == null
+                            ? (MappedItem<T>[]) new MappedItem[size]
+                            : Arrays.copyOf(mappedItems, size);
+        }
+        MappedItem<T> mapped = mappedItems[index];
+        if (mapped == null || mapped.item != item) {
+            mapped = new MappedItem<>(item, map(item));
+            mappedItems[index] = mapped;
+        }
+        return mapped;
+    }
+
+    /**
+     * Moves to the next item in the playlist. If there are no more items and the playlist does not
+     * repeat, then will return the current item.
      *
      * @return Next item in the playlist.
      */
     @Override
     @NonNull
     public final MediaDescriptionCompat skipToNextItem() {
-        if (activeIndex < items.size() - 1) {
-            this.activeIndex++;
+        int nextIndex = getNextIndex();
+        if (nextIndex != -1) {
+            this.activeIndex = nextIndex;
         }
         return getCurrentItem();
     }
 
     /**
-     * Moves to the previous item in the playlist. If already at the beginning of the playlist, then
-     * returns the current item.
+     * Moves to the previous item in the playlist. If already at the beginning of the playlist and
+     * the playlist does not repeat, then returns the current item.
      *
      * @return Previous item in the playlist.
      */
     @Override
     @NonNull
     public final MediaDescriptionCompat skipToPreviousItem() {
-        if (activeIndex > 0) {
-            this.activeIndex--;
+        int position = getOrderPosition(activeIndex) - 1;
+        if (position < 0 && repeatMode == PlaybackStateCompat.REPEAT_MODE_ALL) {
+            position = items.size() - 1;
+        }
+        if (position >= 0) {
+            this.activeIndex = getIndexAt(position);
+        }
+        return getCurrentItem();
+    }
+
+    /**
+     * Moves to an item of the queue published by {@link #getQueueItems(int, int)}.
+     *
+     * @param queueId The id of the queue item, which is the index of the item in the playlist.
+     * @return The new current item.
+     */
+    @NonNull
+    public final MediaDescriptionCompat skipToQueueItem(long queueId) {
+        if (queueId < 0 || queueId >= items.size()) {
+            throw new IllegalArgumentException("Invalid queue id " + queueId);
         }
+        this.activeIndex = (int) queueId;
         return getCurrentItem();
     }
 
+    /**
+     * Builds queue items for a range of the play order. The id of a queue item is the index of its
+     * item in the playlist, so the same item keeps the same id whatever the window it is in.
+     *
+     * @param fromPosition The first position of the play order to include.
+     * @param count The number of items to include.
+     * @return The queue items, in play order.
+     */
+    @NonNull
+    public final List<MediaSessionCompat.QueueItem> getQueueItems(int fromPosition, int count) {
+        int toPosition = Math.min(fromPosition + count, items.size());
+        List<MediaSessionCompat.QueueItem> queue =
+                new ArrayList<>(Math.max(0, toPosition - fromPosition));
+        for (int position = fromPosition; position < toPosition; position++) {
+            int index = getIndexAt(position);
+            queue.add(new MediaSessionCompat.QueueItem(getMappedItem(index).description, index));
+        }
+        return queue;
+    }
+
+    /** Returns the index of the current item in the playlist. */
+    public final int getActiveIndex() {
+        return activeIndex;
+    }
+
+    /** Returns the position of the current item in the play order. */
+    public final int getActivePosition() {
+        return getOrderPosition(activeIndex);
+    }
+
+    /** Returns the number of items in the playlist. */
+    public final int size() {
+        return items.size();
+    }
+
+    /**
+     * Sets how the playlist repeats. With {@link PlaybackStateCompat#REPEAT_MODE_ALL}, the first
+     * item follows the last one. {@link PlaybackStateCompat#REPEAT_MODE_ONE} does not change the
+     * order of the playlist, the player is expected to replay the current item when it completes.
+     *
+     * @param repeatMode One of the {@link PlaybackStateCompat} repeat modes.
+     */
+    public final void setRepeatMode(@PlaybackStateCompat.RepeatMode int repeatMode) {
+        this.repeatMode = repeatMode;
+    }
+
+    @PlaybackStateCompat.RepeatMode
+    public final int getRepeatMode() {
+        return repeatMode;
+    }
+
+    /**
+     * Turns shuffling on or off. When turned on, the current item stays current and the other
+     * items follow it in a random order.
+     *
+     * @param enabled True to shuffle the playlist, false to play it in order.
+     */
+    public final void setShuffleModeEnabled(boolean enabled) {
+        if (!enabled) {
+            shuffleOrder = null;
+            shufflePositions = null;
+            return;
+        }
+        if (shuffleOrder != null) {
+            return;
+        }
+        int size = items.size();
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        // Moves the current item first, then shuffles the rest with Fisher-Yates.
+        order[activeIndex] = 0;
+        order[0] = activeIndex;
+        for (int i = size - 1; i > 1; i--) {
+            int j = 1 + random.nextInt(i);
+            int swap = order[i];
+            order[i] = order[j];
+            order[j] = swap;
+        }
+        int[] positions = new int[size];
+        for (int position = 0; position < size; position++) {
+            positions[order[position]] = position;
+        }
+        shuffleOrder = order;
+        shufflePositions = positions;
+    }
+
+    public final boolean isShuffleModeEnabled() {
+        return shuffleOrder != null;
+    }
+
+    /** Returns the index of the item that follows the current one, or -1 if there is none. */
+    private int getNextIndex() {
+        int position = getOrderPosition(activeIndex) + 1;
+        if (position == items.size()) {
+            if (repeatMode != PlaybackStateCompat.REPEAT_MODE_ALL) {
+                return -1;
+            }
+            position = 0;
+        }
+        return getIndexAt(position);
+    }
+
+    /** Returns the position of an item in the play order. */
+    private int getOrderPosition(int index) {
+        return shufflePositions == null ? index : shufflePositions[index];
+    }
+
+    /** Returns the index of the item at a position of the play order. */
+    private int getIndexAt(int position) {
+        return shuffleOrder == null ? position : shuffleOrder[position];
+    }
+
     /**
      * Converts a {@link MediaDescriptionCompat} into {@link MediaMetadataCompat}. Only a title,
      * description, and media id will be converted. A subclass should override this method if their
@@ -134,4 +352,17 @@ public abstract class ListPlaylistAdapter<T> implements PlaylistAdapter {
      * @return A MediaDescriptionCompat instance with the minimum fields populated.
      */
     protected abstract MediaDescriptionCompat map(T t);
+
+    /** The conversions of an item, the metadata is only built when it is first needed. */
+    private static final class MappedItem<T> {
+
+        final T item;
+        final MediaDescriptionCompat description;
+        MediaMetadataCompat metadata;
+
+        MappedItem(T item, MediaDescriptionCompat description) {
+            this.item = item;
+            this.description = description;
+        }
+    }
 }
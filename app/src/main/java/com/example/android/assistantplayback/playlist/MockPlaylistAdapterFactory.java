@@ -33,18 +33,14 @@ public class MockPlaylistAdapterFactory {
      */
     public static ListPlaylistAdapter<Movie> createMoviePlaylistAdapterWithActiveMovieId(
             int movieId) {
-        List<Movie> movies = MockDatabase.getAllMovies();
-        int activeIndex = getCurrentMovieIndex(movies, movieId);
+        List<Movie> movies;
+        int activeIndex;
+        synchronized (MockDatabase.class) {
+            // Read both under the lock so the index matches the snapshot of the catalog.
+            movies = MockDatabase.getAllMovies();
+            activeIndex = MockDatabase.indexOfMovieWithId(movieId);
+        }
         activeIndex = activeIndex >= 0 ? activeIndex : 0;
         return new MovieListPlaylistAdapter(movies, activeIndex);
     }
-
-    private static int getCurrentMovieIndex(List<Movie> movies, int currentMovieId) {
-        for (int index = 0; index < movies.size(); index++) {
-            if (currentMovieId == movies.get(index).getId()) {
-                return index;
-            }
-        }
-        return -1;
-    }
 }
@@ -17,6 +17,7 @@
 package com.example.android.assistantplayback.playlist;
 
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.support.v4.media.MediaDescriptionCompat;
 
 /** Manages a playlist of MediaDescriptionCompat items. */
@@ -29,6 +30,14 @@ public interface PlaylistAdapter {
      */
     MediaDescriptionCompat getCurrentItem();
 
+    /**
+     * Returns the item after the current one without moving to it.
+     *
+     * @return The next item in the playlist, or null if the current item is the last one.
+     */
+    @Nullable
+    MediaDescriptionCompat peekNextItem();
+
     /**
      * Moves to the next item in the playlist. If there are no more items, then will return the
      * current item.
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.assistantplayback;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+
+/**
+ * Timing and allocation measurements for the benchmarks among the unit tests. <br>
+ * The numbers are printed, so they show up in the test report, and the tests only assert on
+ * ratios with wide margins, so they hold on a loaded machine.
+ */
+public final class Measurements {
+
+    private static final int WARM_UP_RUNS = 5;
+
+    private Measurements() {}
+
+    /** Returns true if the JVM counts the bytes allocated by each thread. */
+    public static boolean canMeasureAllocations() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        return bean instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()
+                && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemoryEnabled();
+    }
+
+    /**
+     * Returns the bytes allocated by the current thread since it started. Only meaningful if
+     * {@link #canMeasureAllocations()}.
+     */
+    public static long allocatedBytes() {
+        com.sun.management.ThreadMXBean bean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Runs a task a few times to warm it up, then returns the bytes it allocates per run.
+     *
+     * @param task The task to measure.
+     * @param runs Number of measured runs.
+     */
+    public static long bytesPerRun(Runnable task, int runs) {
+        for (int i = 0; i < WARM_UP_RUNS; i++) {
+            task.run();
+        }
+        long start = allocatedBytes();
+        for (int i = 0; i < runs; i++) {
+            task.run();
+        }
+        return (allocatedBytes() - start) / runs;
+    }
+
+    /**
+     * Runs a task a few times to warm it up, then returns the median of its measured run times.
+     *
+     * @param task The task to measure.
+     * @param runs Number of measured runs.
+     * @return The median time of a run, in nanoseconds.
+     */
+    public static long medianNanos(Runnable task, int runs) {
+        for (int i = 0; i < WARM_UP_RUNS; i++) {
+            task.run();
+        }
+        long[] times = new long[runs];
+        for (int i = 0; i < runs; i++) {
+            long start = System.nanoTime();
+            task.run();
+            times[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(times);
+        return times[runs / 2];
+    }
+
+    /** Prints a result of a benchmark. */
+    public static void report(String benchmark, String result) {
+        System.out.println(benchmark + ": " + result);
+    }
+}
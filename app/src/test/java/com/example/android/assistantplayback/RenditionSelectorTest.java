@@ -0,0 +1,199 @@
+/*
+ * Copyright (c) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.assistantplayback;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.example.android.assistantplayback.model.Rendition;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the selection policy against a local HTTP server that throttles its bandwidth, standing in
+ * for the video host.
+ */
+public class RenditionSelectorTest {
+
+    private static final List<Rendition> RENDITIONS =
+            Arrays.asList(
+                    new Rendition("http://example.com/360.mp4", 640, 360, 400_000),
+                    new Rendition("http://example.com/540.mp4", 960, 540, 1_200_000),
+                    new Rendition("http://example.com/720.mp4", 1280, 720, 3_000_000),
+                    new Rendition("http://example.com/1080.mp4", 1920, 1080, 6_000_000));
+
+    private ThrottledHttpServer mServer;
+    private RenditionSelector mSelector;
+
+    @Before
+    public void setUp() throws IOException {
+        mServer = new ThrottledHttpServer();
+        mSelector = new RenditionSelector();
+    }
+
+    @After
+    public void tearDown() {
+        mServer.stop();
+    }
+
+    @Test
+    public void select_beforeMeasuring_startsOnLowestRendition() {
+        assertEquals(-1, mSelector.getEstimate());
+        assertEquals(400_000, mSelector.select(RENDITIONS).getBitrate());
+    }
+
+    @Test
+    public void measure_slowNetwork_staysOnLowRendition() {
+        mServer.setBitsPerSecond(2_000_000);
+
+        mSelector.measure(mServer.getUrl());
+
+        assertEstimateNear(2_000_000);
+        assertEquals(1_200_000, mSelector.select(RENDITIONS).getBitrate());
+    }
+
+    @Test
+    public void measure_fastNetwork_switchesToHighestRendition() {
+        mServer.setBitsPerSecond(16_000_000);
+
+        mSelector.measure(mServer.getUrl());
+
+        assertEstimateNear(16_000_000);
+        assertEquals(6_000_000, mSelector.select(RENDITIONS).getBitrate());
+    }
+
+    @Test
+    public void measure_networkSlowsDown_estimateFollowsGradually() {
+        mServer.setBitsPerSecond(16_000_000);
+        mSelector.measure(mServer.getUrl());
+        long fast = mSelector.getEstimate();
+
+        mServer.setBitsPerSecond(2_000_000);
+        mSelector.measure(mServer.getUrl());
+        long slowed = mSelector.getEstimate();
+
+        // One slow sample pulls the average down, without dropping it to the slow throughput.
+        assertTrue(slowed < fast);
+        assertTrue(slowed > 2_000_000);
+    }
+
+    @Test
+    public void measure_onlyRequestsBeginningOfVideo() {
+        mServer.setBitsPerSecond(16_000_000);
+
+        mSelector.measure(mServer.getUrl());
+
+        assertEquals("bytes=0-262143", mServer.getLastRange());
+    }
+
+    @Test
+    public void measure_unreachableServer_keepsEstimate() {
+        String url = mServer.getUrl();
+        mServer.stop();
+
+        mSelector.measure(url);
+
+        assertEquals(-1, mSelector.getEstimate());
+        assertEquals(400_000, mSelector.select(RENDITIONS).getBitrate());
+    }
+
+    private void assertEstimateNear(long bitsPerSecond) {
+        long estimate = mSelector.getEstimate();
+        assertTrue(
+                "Estimate " + estimate + " for " + bitsPerSecond + "bps",
+                estimate > bitsPerSecond * 0.8 && estimate < bitsPerSecond * 1.25);
+    }
+
+    /** Serves the requested range of an endless video at a limited bandwidth. */
+    private static class ThrottledHttpServer implements HttpHandler {
+
+        private static final int CHUNK_BYTES = 8 * 1024;
+
+        private final HttpServer mServer;
+        private volatile long mBitsPerSecond = Long.MAX_VALUE;
+        private volatile String mLastRange;
+
+        ThrottledHttpServer() throws IOException {
+            InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
+            mServer = HttpServer.create(address, 0);
+            mServer.createContext("/", this);
+            mServer.start();
+        }
+
+        String getUrl() {
+            return "http://127.0.0.1:" + mServer.getAddress().getPort() + "/video.mp4";
+        }
+
+        void setBitsPerSecond(long bitsPerSecond) {
+            mBitsPerSecond = bitsPerSecond;
+        }
+
+        String getLastRange() {
+            return mLastRange;
+        }
+
+        void stop() {
+            mServer.stop(0);
+        }
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            String range = exchange.getRequestHeaders().getFirst("Range");
+            mLastRange = range;
+            // Only "bytes=0-<last>" ranges are sent by the selector.
+            long length = Long.parseLong(range.substring(range.indexOf('-') + 1)) + 1;
+            exchange.sendResponseHeaders(206, length);
+            byte[] chunk = new byte[CHUNK_BYTES];
+            long start = System.nanoTime();
+            try (OutputStream out = exchange.getResponseBody()) {
+                for (long sent = 0; sent < length; ) {
+                    int size = (int) Math.min(CHUNK_BYTES, length - sent);
+                    out.write(chunk, 0, size);
+                    out.flush();
+                    sent += size;
+                    // Holds the next chunk until the bytes sent so far fit in the bandwidth.
+                    long due = start + TimeUnit.SECONDS.toNanos(sent * 8) / mBitsPerSecond;
+                    sleepUntil(due);
+                }
+            }
+        }
+
+        private static void sleepUntil(long nanoTime) {
+            long remaining = nanoTime - System.nanoTime();
+            if (remaining > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.assistantplayback.data;
+
+import static com.example.android.assistantplayback.Measurements.report;
+import static org.junit.Assert.assertTrue;
+
+import com.example.android.assistantplayback.model.Movie;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/** Checks that ranked searches of a large catalog answer within their time budget. */
+public class FuzzySearchIndexBenchmarkTest {
+
+    private static final int SIZE = 100_000;
+    private static final int LIMIT = 50;
+    private static final int RUNS = 10;
+
+    // The budget of MockDatabase.rankedSearch.
+    private static final long BUDGET_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    @Test
+    public void search_atLargeCatalog_answersWithinBudget() {
+        List<Movie> movies = TestCatalog.createMovies(SIZE, 2);
+        TestCatalog catalog = new TestCatalog();
+        FuzzySearchIndex index = new FuzzySearchIndex();
+        for (Movie movie : movies) {
+            catalog.add(movie);
+            index.add(movie);
+        }
+        Movie wanted = movies.get(SIZE / 2);
+        String[] queries = {
+            misspell(wanted.getTitle()),
+            wanted.getTitle(),
+            misspell(movies.get(SIZE / 3).getTitle())
+        };
+
+        long slowest = 0;
+        for (String query : queries) {
+            for (int run = 0; run < RUNS; run++) {
+                long start = System.nanoTime();
+                List<Movie> results = search(index, catalog, query);
+                long nanos = System.nanoTime() - start;
+                // The first runs warm up the JIT.
+                if (run >= RUNS / 2) {
+                    slowest = Math.max(slowest, nanos);
+                }
+                assertTrue(!results.isEmpty() && results.size() <= LIMIT);
+            }
+        }
+        List<Movie> results = search(index, catalog, queries[0]);
+        report(
+                "FuzzySearchIndex at " + SIZE + " movies",
+                "slowest query " + TimeUnit.NANOSECONDS.toMillis(slowest) + "ms, budget "
+                        + TimeUnit.NANOSECONDS.toMillis(BUDGET_NANOS) + "ms");
+        assertTrue(TestCatalog.ids(results).contains(wanted.getId()));
+        // The search itself stops at the budget, ranking what it found takes the rest.
+        assertTrue(slowest < BUDGET_NANOS * 2);
+    }
+
+    private static List<Movie> search(FuzzySearchIndex index, TestCatalog catalog, String query) {
+        return index.search(
+                query, LIMIT, BUDGET_NANOS, catalog.getMovies(), catalog.getIdIndex());
+    }
+
+    /** Drops a letter from the middle of the longest word, as voice recognition would. */
+    private static String misspell(String title) {
+        String[] words = title.split(" ");
+        int longest = 0;
+        for (int i = 1; i < words.length; i++) {
+            if (words[i].length() > words[longest].length()) {
+                longest = i;
+            }
+        }
+        String word = words[longest];
+        int middle = word.length() / 2;
+        words[longest] = word.substring(0, middle) + word.substring(middle + 1);
+        StringBuilder misspelled = new StringBuilder();
+        for (String text : words) {
+            misspelled.append(text).append(' ');
+        }
+        return misspelled.toString().trim();
+    }
+}
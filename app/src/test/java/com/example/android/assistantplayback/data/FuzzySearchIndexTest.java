@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.assistantplayback.data;
+
+import static com.example.android.assistantplayback.data.TestCatalog.createMovie;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.example.android.assistantplayback.model.Movie;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class FuzzySearchIndexTest {
+
+    // Long enough for the searches to never run out of time.
+    private static final long BUDGET_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private TestCatalog mCatalog;
+    private FuzzySearchIndex mFuzzySearchIndex;
+
+    @Before
+    public void setUp() {
+        mCatalog = new TestCatalog();
+        mFuzzySearchIndex = new FuzzySearchIndex();
+        for (Movie movie : MockDatabase.getDefaultMovies()) {
+            add(movie);
+        }
+    }
+
+    @Test
+    public void search_misspelledTitle_ranksMovieFirst() {
+        List<Movie> results = search("jurasic park", 10);
+
+        assertFalse(results.isEmpty());
+        assertEquals("Jurassic Park", results.get(0).getTitle());
+    }
+
+    @Test
+    public void search_misspelledWord_matchesWithinDistance() {
+        assertEquals("The Incredibles", search("incredibels", 10).get(0).getTitle());
+        assertEquals("Big Buck Bunny", search("buny", 10).get(0).getTitle());
+    }
+
+    @Test
+    public void search_unrelatedWord_matchesNothing() {
+        assertTrue(search("spaceship", 10).isEmpty());
+    }
+
+    @Test
+    public void search_titleMatch_ranksAboveDescriptionMatch() {
+        add(createMovie(10, "Park Rangers", "Rangers look after a forest."));
+        add(createMovie(11, "Night Shift", "A guard patrols a park at night."));
+
+        List<Movie> results = search("park", 10);
+
+        assertTrue(indexOf(results, 10) < indexOf(results, 11));
+    }
+
+    @Test
+    public void search_afterRemove_skipsRemovedMovie() {
+        remove(3);
+
+        for (Movie movie : search("jurasic park", 10)) {
+            assertFalse(movie.getId() == 3);
+        }
+    }
+
+    @Test
+    public void search_afterRemoveAndReAdd_findsNewTitle() {
+        remove(3);
+        add(createMovie(3, "Jurassic World", "The dinosaurs are back."));
+
+        List<Movie> results = search("jurasic wrld", 10);
+
+        assertEquals("Jurassic World", results.get(0).getTitle());
+    }
+
+    @Test
+    public void search_stopsAtLimit() {
+        assertEquals(1, search("the", 1).size());
+    }
+
+    @Test
+    public void search_scoreTie_keepsCatalogOrder() {
+        add(createMovie(10, "Sintel", "A dragon."));
+        add(createMovie(11, "Sintel", "A dragon."));
+        add(createMovie(12, "Sintel", "A dragon."));
+
+        List<Movie> results = search("sintel", 2);
+
+        assertEquals(2, results.size());
+        assertEquals(10, results.get(0).getId());
+        assertEquals(11, results.get(1).getId());
+    }
+
+    @Test
+    public void remove_manyMovies_rebuildsTreeWithoutDeadWords() {
+        int words = mFuzzySearchIndex.getTreeSize();
+        for (int id = 100; id < 200; id++) {
+            add(createMovie(id, "Episode" + id, "Season" + id));
+        }
+        for (int id = 100; id < 200; id++) {
+            remove(id);
+        }
+
+        // Dead words never outnumber the live ones.
+        assertTrue(mFuzzySearchIndex.getTreeSize() <= 2 * words);
+        assertEquals("Jurassic Park", search("jurasic park", 10).get(0).getTitle());
+        assertTrue(search("episode150", 10).isEmpty());
+    }
+
+    @Test
+    public void search_removedWordComesBack_matchesAgain() {
+        add(createMovie(10, "Sintel", "A dragon."));
+        remove(10);
+        assertTrue(search("sintel", 10).isEmpty());
+
+        add(createMovie(11, "Sintel", "A dragon."));
+
+        assertEquals(11, search("sintl", 10).get(0).getId());
+    }
+
+    private List<Movie> search(String query, int limit) {
+        return mFuzzySearchIndex.search(
+                query, limit, BUDGET_NANOS, mCatalog.getMovies(), mCatalog.getIdIndex());
+    }
+
+    private void add(Movie movie) {
+        mCatalog.add(movie);
+        mFuzzySearchIndex.add(movie);
+    }
+
+    private void remove(int id) {
+        mFuzzySearchIndex.remove(mCatalog.remove(id));
+    }
+
+    private static int indexOf(List<Movie> movies, int id) {
+        for (int i = 0; i < movies.size(); i++) {
+            if (movies.get(i).getId() == id) {
+                return i;
+            }
+        }
+        throw new AssertionError("Movie " + id + " not found in " + movies);
+    }
+}
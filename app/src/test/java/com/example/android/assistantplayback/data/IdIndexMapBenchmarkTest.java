@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.assistantplayback.data;
+
+import static com.example.android.assistantplayback.Measurements.bytesPerRun;
+import static com.example.android.assistantplayback.Measurements.canMeasureAllocations;
+import static com.example.android.assistantplayback.Measurements.medianNanos;
+import static com.example.android.assistantplayback.Measurements.report;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+/** Shows that a lookup by id costs the same whatever the size of the catalog. */
+public class IdIndexMapBenchmarkTest {
+
+    private static final int LOOKUPS = 100_000;
+    private static final int RUNS = 15;
+
+    // Keeps the results of the lookups alive, so they are not optimized away.
+    private long mSink;
+
+    @Test
+    public void get_atGrowingCatalogSizes_staysFlat() {
+        long fastest = Long.MAX_VALUE;
+        long slowest = 0;
+        for (int size : new int[] {1_000, 10_000, 100_000}) {
+            Random random = new Random(size);
+            final int[] ids = new int[size];
+            final IdIndexMap map = new IdIndexMap(size);
+            for (int index = 0; index < size; index++) {
+                // Sparse ids, as a catalog gets them after years of inserts and deletes.
+                ids[index] = index * 7919 + random.nextInt(7919);
+                map.put(ids[index], index);
+            }
+            final int[] lookups = new int[LOOKUPS];
+            for (int i = 0; i < LOOKUPS; i++) {
+                lookups[i] = ids[random.nextInt(size)];
+            }
+            Runnable lookUp =
+                    new Runnable() {
+                        @Override
+                        public void run() {
+                            for (int id : lookups) {
+                                mSink += map.get(id);
+                            }
+                        }
+                    };
+
+            long nanos = medianNanos(lookUp, RUNS);
+            report(
+                    "IdIndexMap at " + size + " movies",
+                    String.format("%.1fns per lookup", (double) nanos / LOOKUPS));
+            fastest = Math.min(fastest, nanos);
+            slowest = Math.max(slowest, nanos);
+            if (canMeasureAllocations()) {
+                // Ids are never boxed.
+                assertEquals(0, bytesPerRun(lookUp, RUNS) / LOOKUPS);
+            }
+        }
+        // A hundred times more movies, but lookups cost about the same.
+        assertTrue(slowest < fastest * 4);
+    }
+
+    @Test
+    public void get_atLargeCatalog_beatsLinearScan() {
+        final int size = 100_000;
+        final int[] ids = new int[size];
+        final IdIndexMap map = new IdIndexMap(size);
+        for (int index = 0; index < size; index++) {
+            ids[index] = index * 3 + 1;
+            map.put(ids[index], index);
+        }
+        final int[] lookups = new int[100];
+        Random random = new Random(1);
+        for (int i = 0; i < lookups.length; i++) {
+            lookups[i] = ids[random.nextInt(size)];
+        }
+
+        long mapped =
+                medianNanos(
+                        new Runnable() {
+                            @Override
+                            public void run() {
+                                for (int id : lookups) {
+                                    mSink += map.get(id);
+                                }
+                            }
+                        },
+                        RUNS);
+        long scanned =
+                medianNanos(
+                        new Runnable() {
+                            @Override
+                            public void run() {
+                                for (int id : lookups) {
+                                    mSink += scan(ids, id);
+                                }
+                            }
+                        },
+                        RUNS);
+        report(
+                "IdIndexMap at " + size + " movies",
+                mapped / lookups.length + "ns per lookup, linear scan "
+                        + scanned / lookups.length + "ns");
+        assertTrue(mapped * 100 < scanned);
+    }
+
+    /** The lookup the map replaced, which walks the catalog until it finds the id. */
+    private static int scan(int[] ids, int id) {
+        for (int index = 0; index < ids.length; index++) {
+            if (ids[index] == id) {
+                return index;
+            }
+        }
+        return -1;
+    }
+}
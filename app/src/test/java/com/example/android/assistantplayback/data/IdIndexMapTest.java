@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.assistantplayback.data;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+public class IdIndexMapTest {
+
+    @Test
+    public void get_missingId_returnsNotFound() {
+        IdIndexMap map = new IdIndexMap(4);
+
+        assertEquals(IdIndexMap.NOT_FOUND, map.get(1));
+    }
+
+    @Test
+    public void put_existingId_replacesIndex() {
+        IdIndexMap map = new IdIndexMap(4);
+        map.put(1, 0);
+        map.put(1, 5);
+
+        assertEquals(5, map.get(1));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    public void remove_thenPutAgain_mapsNewIndex() {
+        IdIndexMap map = new IdIndexMap(4);
+        map.put(1, 0);
+        map.put(2, 1);
+        map.remove(1);
+
+        assertEquals(IdIndexMap.NOT_FOUND, map.get(1));
+        assertEquals(1, map.get(2));
+        assertEquals(1, map.size());
+
+        map.put(1, 7);
+
+        assertEquals(7, map.get(1));
+        assertEquals(2, map.size());
+    }
+
+    @Test
+    public void remove_missingId_changesNothing() {
+        IdIndexMap map = new IdIndexMap(4);
+        map.put(1, 0);
+        map.remove(2);
+
+        assertEquals(0, map.get(1));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    public void remove_fromFullTable_keepsOtherIdsReachable() {
+        // Twelve ids fill the smallest table up to its load factor, so some share probe runs.
+        IdIndexMap map = new IdIndexMap(4);
+        for (int id = 0; id < 12; id++) {
+            map.put(id, id);
+        }
+        for (int id = 0; id < 12; id += 2) {
+            map.remove(id);
+        }
+
+        for (int id = 0; id < 12; id++) {
+            assertEquals(id % 2 == 0 ? IdIndexMap.NOT_FOUND : id, map.get(id));
+        }
+
+        for (int id = 0; id < 12; id += 2) {
+            map.put(id, id + 100);
+        }
+
+        for (int id = 0; id < 12; id++) {
+            assertEquals(id % 2 == 0 ? id + 100 : id, map.get(id));
+        }
+        assertEquals(12, map.size());
+    }
+
+    @Test
+    public void putAndRemove_matchHashMap() {
+        IdIndexMap map = new IdIndexMap(4);
+        Map<Integer, Integer> expected = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 10000; i++) {
+            int id = random.nextInt(200);
+            if (random.nextBoolean()) {
+                map.put(id, i);
+                expected.put(id, i);
+            } else {
+                map.remove(id);
+                expected.remove(id);
+            }
+        }
+
+        assertEquals(expected.size(), map.size());
+        for (int id = 0; id < 200; id++) {
+            Integer index = expected.get(id);
+            assertEquals(index != null ? index : IdIndexMap.NOT_FOUND, map.get(id));
+        }
+    }
+}
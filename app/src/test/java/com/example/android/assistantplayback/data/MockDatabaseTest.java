@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.assistantplayback.data;
+
+import static com.example.android.assistantplayback.data.TestCatalog.createMovie;
+import static com.example.android.assistantplayback.data.TestCatalog.ids;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.example.android.assistantplayback.model.Movie;
+import com.example.android.assistantplayback.model.MovieBuilder;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+
+public class MockDatabaseTest {
+
+    private MockDatabase mDatabase;
+
+    @Before
+    public void setUp() {
+        // The catalog is static, so every test starts over from the default movies.
+        MockDatabase.reset();
+        mDatabase = new MockDatabase();
+    }
+
+    @Test
+    public void applyBatch_removeReAddAndInsert_updatesCatalogAndIndexes() {
+        MockDatabase.removeMovie(2);
+        int version = MockDatabase.getVersion();
+
+        MovieBatch batch = new MovieBatch();
+        batch.put(createMovie(2, "Big Buck Bunny Returns", "The rabbit is back."));
+        batch.remove(3);
+        batch.put(createMovie(5, "Sintel", "A girl searches for her baby dragon."));
+        MockDatabase.applyBatch(batch);
+
+        assertEquals(version + 1, MockDatabase.getVersion());
+        assertEquals(ids(1, 4, 2, 5), ids(MockDatabase.getAllMovies()));
+        assertCatalogIndexed();
+        assertNull(MockDatabase.getMovieWithId(3));
+        assertEquals("Big Buck Bunny Returns", MockDatabase.getMovieWithId(2).getTitle());
+        assertEquals("Sintel", MockDatabase.getMovieWithId(5).getTitle());
+    }
+
+    @Test
+    public void applyBatch_removeReAddAndInsert_updatesSearches() {
+        MockDatabase.removeMovie(2);
+
+        MovieBatch batch = new MovieBatch();
+        batch.put(createMovie(2, "Big Buck Bunny Returns", "The rabbit is back."));
+        batch.remove(3);
+        batch.put(createMovie(5, "Sintel", "A girl searches for her baby dragon."));
+        MockDatabase.applyBatch(batch);
+
+        assertTrue(mDatabase.search("jurassic").isEmpty());
+        assertEquals(ids(2), ids(mDatabase.search("returns")));
+        assertEquals(ids(5), ids(mDatabase.search("dragon")));
+        assertTrue(mDatabase.search("giant rabbit").isEmpty());
+        assertFalse(ids(mDatabase.rankedSearch("jurasic park", 10)).contains(3));
+        assertEquals(5, mDatabase.rankedSearch("sintl", 10).get(0).getId());
+    }
+
+    @Test
+    public void applyBatch_removeThenReAddInSameBatch_replacesMovie() {
+        MovieBatch batch = new MovieBatch();
+        assertTrue(batch.remove(1));
+        assertFalse(batch.put(createMovie(1, "Elephants Dream Remastered", "Proog and Emo.")));
+        MockDatabase.applyBatch(batch);
+
+        assertEquals(ids(1, 2, 3, 4), ids(MockDatabase.getAllMovies()));
+        assertCatalogIndexed();
+        assertEquals(ids(1), ids(mDatabase.search("remastered")));
+        assertTrue(mDatabase.search("capricious").isEmpty());
+    }
+
+    @Test
+    public void applyBatch_insertThenRemoveInSameBatch_leavesCatalog() {
+        MovieBatch batch = new MovieBatch();
+        batch.put(createMovie(5, "Sintel", "A girl searches for her baby dragon."));
+        batch.remove(5);
+        MockDatabase.applyBatch(batch);
+
+        assertEquals(ids(1, 2, 3, 4), ids(MockDatabase.getAllMovies()));
+        assertCatalogIndexed();
+        assertTrue(mDatabase.search("dragon").isEmpty());
+    }
+
+    @Test
+    public void applyBatch_afterQuery_updatesSortedIndex() {
+        Random random = new Random(42);
+        MovieBatch insert = new MovieBatch();
+        for (int id = 10; id < 110; id++) {
+            insert.put(createRandomMovie(id, random));
+        }
+        MockDatabase.applyBatch(insert);
+
+        for (int round = 0; round < 20; round++) {
+            // Builds the sorted index, so the batch has to update it.
+            MockDatabase.queryMovies(createQuery(MovieQuery.KEY_PRODUCTION_YEAR, false));
+            MovieBatch batch = new MovieBatch();
+            for (int i = 0; i < 10; i++) {
+                int id = 10 + random.nextInt(150);
+                if (random.nextBoolean()) {
+                    batch.remove(id);
+                } else {
+                    batch.put(createRandomMovie(id, random));
+                }
+            }
+            MockDatabase.applyBatch(batch);
+
+            SortedMovieIndex rebuilt = new SortedMovieIndex(MockDatabase.getAllMovies());
+            for (int key = 0; key < MovieQuery.KEY_COUNT; key++) {
+                for (boolean descending : new boolean[] {false, true}) {
+                    MovieQuery query = createQuery(key, descending);
+                    query.filtered[MovieQuery.KEY_PRODUCTION_YEAR] = true;
+                    query.min[MovieQuery.KEY_PRODUCTION_YEAR] = 1995;
+                    query.max[MovieQuery.KEY_PRODUCTION_YEAR] = 2005;
+                    assertEquals(
+                            ids(rebuilt.query(query, MockDatabase.getAllMovies())),
+                            ids(MockDatabase.queryMovies(query)));
+                }
+            }
+        }
+    }
+
+    private static MovieQuery createQuery(int sortKey, boolean descending) {
+        MovieQuery query = new MovieQuery();
+        query.sortKey = sortKey;
+        query.descending = descending;
+        return query;
+    }
+
+    /** Creates a movie with random keys, many of them tied. */
+    private static Movie createRandomMovie(int id, Random random) {
+        return new MovieBuilder()
+                .setId(id)
+                .setTitle("Movie " + id)
+                .setDescription("")
+                .setProductionYear(1990 + random.nextInt(20))
+                .setRatingScore(random.nextInt(5))
+                .setDuration(random.nextInt(3) * 1000)
+                .setPurchasePrice("$" + random.nextInt(10) + ".99")
+                .setLive(random.nextInt(4) == 0)
+                .createMovie();
+    }
+
+    /** Checks that every movie is found at its position in the catalog. */
+    private static void assertCatalogIndexed() {
+        List<Movie> movies = MockDatabase.getAllMovies();
+        for (int index = 0; index < movies.size(); index++) {
+            assertEquals(index, MockDatabase.indexOfMovieWithId(movies.get(index).getId()));
+        }
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright (c) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.assistantplayback.data;
+
+import static com.example.android.assistantplayback.Measurements.medianNanos;
+import static com.example.android.assistantplayback.Measurements.report;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.database.Cursor;
+import android.database.CursorWindow;
+import android.provider.BaseColumns;
+
+import com.example.android.assistantplayback.model.Movie;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the rows per second written into a {@link CursorWindow} by the column plan of {@link
+ * MovieSuggestionCursor} with the default fill of {@link android.database.AbstractCursor}, which
+ * probes the type of every value before reading it through the generic getters.
+ */
+public class MovieSuggestionCursorBenchmarkTest {
+
+    private static final int ROWS = 10_000;
+    private static final int RUNS = 15;
+
+    // The columns the search UI shows for a suggestion.
+    private static final String[] SUGGESTION_PROJECTION = {
+        BaseColumns._ID,
+        MockDatabase.KEY_NAME,
+        MockDatabase.KEY_DESCRIPTION,
+        MockDatabase.KEY_ICON,
+        MockDatabase.KEY_PRODUCTION_YEAR
+    };
+
+    @Test
+    public void fillWindow_withColumnPlan_keepsUpWithDefaultFill() {
+        List<Movie> movies = TestCatalog.createMovies(ROWS, 5);
+        String[][] projections = {MovieSuggestionCursor.COLUMNS, SUGGESTION_PROJECTION};
+        for (String[] projection : projections) {
+            final PositionedCursor cursor = new PositionedCursor(movies, projection);
+            final RecordingWindow planned = new RecordingWindow();
+            final RecordingWindow byType = new RecordingWindow();
+            cursor.fillWindow(0, planned);
+            fillWindowByType(cursor, byType);
+            assertEquals(ROWS * projection.length, planned.getValueCount());
+            assertEquals(byType.getValueCount(), planned.getValueCount());
+            assertEquals(byType.getChecksum(), planned.getChecksum());
+
+            long plannedNanos =
+                    medianNanos(
+                            new Runnable() {
+                                @Override
+                                public void run() {
+                                    cursor.fillWindow(0, planned);
+                                }
+                            },
+                            RUNS);
+            long byTypeNanos =
+                    medianNanos(
+                            new Runnable() {
+                                @Override
+                                public void run() {
+                                    fillWindowByType(cursor, byType);
+                                }
+                            },
+                            RUNS);
+            report(
+                    "MovieSuggestionCursor with " + projection.length + " columns",
+                    rowsPerSecond(plannedNanos) + " rows/s, default fill "
+                            + rowsPerSecond(byTypeNanos) + " rows/s");
+            // The plan wins with many string columns, each probed for its type by the default
+            // fill. With a few columns the JIT inlines the probes, so the plan is only required
+            // not to be slower, with a margin for noise.
+            assertTrue(plannedNanos < byTypeNanos * 3 / 2);
+        }
+    }
+
+    private static long rowsPerSecond(long nanos) {
+        return ROWS * TimeUnit.SECONDS.toNanos(1) / Math.max(1, nanos);
+    }
+
+    /** The fill of AbstractCursor, which moves to each row and writes each value by its type. */
+    private static void fillWindowByType(PositionedCursor cursor, CursorWindow window) {
+        int columns = cursor.getColumnNames().length;
+        window.clear();
+        window.setStartPosition(0);
+        window.setNumColumns(columns);
+        for (int row = 0; row < cursor.getCount(); row++) {
+            cursor.setRow(row);
+            window.allocRow();
+            for (int column = 0; column < columns; column++) {
+                switch (cursor.getType(column)) {
+                    case Cursor.FIELD_TYPE_NULL:
+                        window.putNull(row, column);
+                        break;
+                    case Cursor.FIELD_TYPE_INTEGER:
+                        window.putLong(cursor.getLong(column), row, column);
+                        break;
+                    case Cursor.FIELD_TYPE_FLOAT:
+                        window.putDouble(cursor.getDouble(column), row, column);
+                        break;
+                    default:
+                        window.putString(cursor.getString(column), row, column);
+                        break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Keeps its own position, since the generic getters read the movie at the position and the
+     * framework methods that move it are stubbed out in unit tests.
+     */
+    private static class PositionedCursor extends MovieSuggestionCursor {
+
+        private int mRow;
+
+        PositionedCursor(List<Movie> movies, String[] projection) {
+            super(movies, projection);
+        }
+
+        void setRow(int row) {
+            mRow = row;
+        }
+
+        @Override
+        public int getPosition() {
+            return mRow;
+        }
+
+        @Override
+        protected void checkPosition() {}
+    }
+
+    /**
+     * Accepts every row and only counts the values written into it, with a checksum so both fills
+     * can be compared and none of the writes is optimized away.
+     */
+    private static class RecordingWindow extends CursorWindow {
+
+        private int mValueCount;
+        private long mChecksum;
+
+        RecordingWindow() {
+            super("benchmark");
+        }
+
+        int getValueCount() {
+            return mValueCount;
+        }
+
+        long getChecksum() {
+            return mChecksum;
+        }
+
+        @Override
+        public void clear() {
+            mValueCount = 0;
+            mChecksum = 0;
+        }
+
+        @Override
+        public void setStartPosition(int position) {}
+
+        @Override
+        public boolean setNumColumns(int columnNum) {
+            return true;
+        }
+
+        @Override
+        public boolean allocRow() {
+            return true;
+        }
+
+        @Override
+        public void freeLastRow() {}
+
+        @Override
+        public boolean putString(String value, int row, int column) {
+            return record(value.length(), row, column);
+        }
+
+        @Override
+        public boolean putLong(long value, int row, int column) {
+            return record(value, row, column);
+        }
+
+        @Override
+        public boolean putDouble(double value, int row, int column) {
+            return record(Double.doubleToLongBits(value), row, column);
+        }
+
+        @Override
+        public boolean putNull(int row, int column) {
+            return record(0, row, column);
+        }
+
+        private boolean record(long value, int row, int column) {
+            mValueCount++;
+            mChecksum = mChecksum * 31 + value + row + column;
+            return true;
+        }
+    }
+}
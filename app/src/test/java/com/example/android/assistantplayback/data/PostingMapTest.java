@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.assistantplayback.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+public class PostingMapTest {
+
+    @Test
+    public void getOrAdd_sameGram_returnsSameList() {
+        PostingMap map = new PostingMap();
+        PostingList list = map.getOrAdd(42L);
+
+        assertSame(list, map.getOrAdd(42L));
+        assertSame(list, map.get(42L));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    public void remove_thenGetOrAddAgain_returnsNewList() {
+        PostingMap map = new PostingMap();
+        PostingList first = map.getOrAdd(7L);
+        map.remove(7L);
+
+        assertNull(map.get(7L));
+        assertEquals(0, map.size());
+
+        PostingList second = map.getOrAdd(7L);
+
+        assertSame(second, map.get(7L));
+        assertEquals(0, second.size);
+        assertEquals(1, map.size());
+        assertFalse(first == second);
+    }
+
+    @Test
+    public void getOrAddAndRemove_matchHashMap() {
+        PostingMap map = new PostingMap();
+        Map<Long, PostingList> expected = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 20000; i++) {
+            // Grams pack three chars, keep them in a small range so they collide and repeat.
+            long gram = ((long) random.nextInt(8) << 32) | (random.nextInt(8) << 16) | 'a';
+            if (random.nextBoolean()) {
+                PostingList list = map.getOrAdd(gram);
+                if (!expected.containsKey(gram)) {
+                    expected.put(gram, list);
+                }
+                assertSame(expected.get(gram), list);
+            } else {
+                map.remove(gram);
+                expected.remove(gram);
+            }
+        }
+
+        assertEquals(expected.size(), map.size());
+        for (int first = 0; first < 8; first++) {
+            for (int second = 0; second < 8; second++) {
+                long gram = ((long) first << 32) | (second << 16) | 'a';
+                assertSame(expected.get(gram), map.get(gram));
+            }
+        }
+    }
+}
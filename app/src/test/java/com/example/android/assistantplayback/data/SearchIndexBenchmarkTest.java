@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.assistantplayback.data;
+
+import static com.example.android.assistantplayback.Measurements.bytesPerRun;
+import static com.example.android.assistantplayback.Measurements.canMeasureAllocations;
+import static com.example.android.assistantplayback.Measurements.medianNanos;
+import static com.example.android.assistantplayback.Measurements.report;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.example.android.assistantplayback.model.Movie;
+import com.example.android.assistantplayback.model.TextNormalizer;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Compares the trigram index with the linear scan it replaced, in time as the catalog grows and in
+ * memory allocated per query.
+ */
+public class SearchIndexBenchmarkTest {
+
+    private static final int RUNS = 15;
+
+    @Test
+    public void search_atGrowingCatalogSizes_beatsLinearScan() {
+        for (int size : new int[] {1_000, 10_000, 100_000}) {
+            final List<Movie> movies = TestCatalog.createMovies(size, 1);
+            final TestCatalog catalog = new TestCatalog();
+            final SearchIndex index = new SearchIndex();
+            for (Movie movie : movies) {
+                catalog.add(movie);
+                index.add(movie);
+            }
+            // A word typed in full, the start of a word and two words, as the search box sends.
+            String word = movies.get(size / 2).getTitle().split(" ")[0];
+            final String[] queries = {word, word.substring(0, 4), movies.get(size / 3).getTitle()};
+            for (String query : queries) {
+                assertEquals(
+                        TestCatalog.ids(scan(movies, query)),
+                        TestCatalog.ids(search(index, catalog, query)));
+            }
+
+            long indexed =
+                    medianNanos(
+                            new Runnable() {
+                                @Override
+                                public void run() {
+                                    for (String query : queries) {
+                                        search(index, catalog, query);
+                                    }
+                                }
+                            },
+                            RUNS);
+            long scanned =
+                    medianNanos(
+                            new Runnable() {
+                                @Override
+                                public void run() {
+                                    for (String query : queries) {
+                                        scan(movies, query);
+                                    }
+                                }
+                            },
+                            RUNS);
+            report(
+                    "SearchIndex at " + size + " movies",
+                    indexed / 1000 + "us per 3 queries, linear scan " + scanned / 1000 + "us");
+            if (size == 100_000) {
+                assertTrue(indexed * 5 < scanned);
+            }
+        }
+    }
+
+    @Test
+    public void search_allocatesFarLessThanLinearScan() {
+        Assume.assumeTrue(canMeasureAllocations());
+        final List<Movie> movies = TestCatalog.createMovies(10_000, 3);
+        final TestCatalog catalog = new TestCatalog();
+        final SearchIndex index = new SearchIndex();
+        for (Movie movie : movies) {
+            catalog.add(movie);
+            index.add(movie);
+        }
+        final String query = movies.get(500).getTitle().split(" ")[0];
+
+        long indexed =
+                bytesPerRun(
+                        new Runnable() {
+                            @Override
+                            public void run() {
+                                search(index, catalog, query);
+                            }
+                        },
+                        RUNS);
+        long scanned =
+                bytesPerRun(
+                        new Runnable() {
+                            @Override
+                            public void run() {
+                                scan(movies, query);
+                            }
+                        },
+                        RUNS);
+        final char[] normalizedQuery = TextNormalizer.normalize(query);
+        long matched =
+                bytesPerRun(
+                        new Runnable() {
+                            @Override
+                            public void run() {
+                                for (Movie movie : movies) {
+                                    SearchIndex.matches(movie, normalizedQuery);
+                                }
+                            }
+                        },
+                        RUNS);
+        report(
+                "SearchIndex allocations at " + movies.size() + " movies",
+                indexed + " bytes per query, linear scan " + scanned + " bytes, matching "
+                        + matched + " bytes per " + movies.size() + " candidates");
+        // Only the results and the scratch space of the query are allocated.
+        assertTrue(indexed * 10 < scanned);
+        assertEquals(0, matched / movies.size());
+    }
+
+    private static List<Movie> search(SearchIndex index, TestCatalog catalog, String query) {
+        return index.search(query, Integer.MAX_VALUE, catalog.getMovies(), catalog.getIdIndex());
+    }
+
+    /** The search the index replaced, which lower cases every title and description each time. */
+    private static List<Movie> scan(List<Movie> movies, String query) {
+        String lowerCaseQuery = query.toLowerCase(Locale.ROOT);
+        List<Movie> results = new ArrayList<>();
+        for (Movie movie : movies) {
+            if (movie.getTitle().toLowerCase(Locale.ROOT).contains(lowerCaseQuery)
+                    || movie.getDescription().toLowerCase(Locale.ROOT).contains(lowerCaseQuery)) {
+                results.add(movie);
+            }
+        }
+        return results;
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.assistantplayback.data;
+
+import static com.example.android.assistantplayback.data.TestCatalog.createMovie;
+import static com.example.android.assistantplayback.data.TestCatalog.ids;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.example.android.assistantplayback.model.Movie;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+public class SearchIndexTest {
+
+    private TestCatalog mCatalog;
+    private SearchIndex mSearchIndex;
+
+    @Before
+    public void setUp() {
+        mCatalog = new TestCatalog();
+        mSearchIndex = new SearchIndex();
+        add(createMovie(1, "Elephant's Dream", "Two characters explore a machine."));
+        add(createMovie(2, "Big Buck Bunny", "A giant rabbit takes a comical revenge."));
+        add(createMovie(3, "Jurassic Park", "A theme park suffers a power breakdown."));
+    }
+
+    @Test
+    public void search_matchesTitleAndDescription() {
+        assertEquals(ids(3), ids(search("jurassic")));
+        assertEquals(ids(2), ids(search("rabbit")));
+        assertEquals(ids(1, 2, 3), ids(search("a")));
+    }
+
+    @Test
+    public void search_ignoresCaseAndAccents() {
+        assertEquals(ids(1), ids(search("ÉLÉPHANT")));
+    }
+
+    @Test
+    public void search_afterRemove_skipsRemovedMovie() {
+        remove(3);
+
+        assertTrue(search("jurassic").isEmpty());
+        assertTrue(search("park").isEmpty());
+        assertEquals(ids(2), ids(search("revenge")));
+    }
+
+    @Test
+    public void search_afterRemoveAndReAdd_findsNewText() {
+        remove(3);
+        add(createMovie(3, "Jurassic World", "The park is open again."));
+
+        assertEquals(ids(3), ids(search("world")));
+        assertEquals(ids(3), ids(search("jurassic")));
+        assertTrue(search("breakdown").isEmpty());
+    }
+
+    @Test
+    public void search_afterReAddInAnotherPosition_isOrderedById() {
+        remove(1);
+        add(createMovie(1, "Elephant's Dream", "Two characters explore a park."));
+
+        assertEquals(ids(1, 3), ids(search("park")));
+    }
+
+    @Test
+    public void search_shortQueryAfterReAdd_isOrderedById() {
+        remove(1);
+        add(createMovie(1, "Elephant's Dream", "Two characters explore a machine."));
+
+        assertEquals(ids(1, 2, 3), ids(search("a")));
+        assertEquals(ids(1, 2, 3), ids(search("re")));
+    }
+
+    @Test
+    public void search_stopsAtLimit() {
+        assertEquals(2, search("a", 2).size());
+    }
+
+    private List<Movie> search(String query) {
+        return search(query, Integer.MAX_VALUE);
+    }
+
+    private List<Movie> search(String query, int limit) {
+        return mSearchIndex.search(query, limit, mCatalog.getMovies(), mCatalog.getIdIndex());
+    }
+
+    private void add(Movie movie) {
+        mCatalog.add(movie);
+        mSearchIndex.add(movie);
+    }
+
+    private void remove(int id) {
+        mSearchIndex.remove(mCatalog.remove(id));
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.assistantplayback.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.example.android.assistantplayback.model.Movie;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+public class SuggestionCacheTest {
+
+    private SuggestionCache mCache;
+
+    @Before
+    public void setUp() {
+        MockDatabase.reset();
+        mCache = new SuggestionCache(new MockDatabase(), 16);
+    }
+
+    @Test
+    public void search_repeatedRankedQuery_isCached() {
+        List<Movie> first = mCache.search("Jurasic Park", 10);
+        List<Movie> second = mCache.search("jurasic park", 10);
+
+        assertEquals("Jurassic Park", first.get(0).getTitle());
+        assertEquals(first, second);
+        assertEquals(1, mCache.getMissCount());
+        assertEquals(1, mCache.getHitCount());
+    }
+
+    @Test
+    public void search_partialWord_filtersCachedPrefix() {
+        mCache.search("incr", 10);
+        List<Movie> movies = mCache.search("incre", 10);
+
+        assertEquals(new MockDatabase().search("incre", 10), movies);
+        assertEquals(1, mCache.getMissCount());
+        assertEquals(1, mCache.getHitCount());
+    }
+
+    @Test
+    public void search_rankedPrefix_isNotFiltered() {
+        mCache.search("park", 10);
+        List<Movie> movies = mCache.search("parkzz", 10);
+
+        assertTrue(movies.isEmpty());
+        assertEquals(2, mCache.getMissCount());
+    }
+}
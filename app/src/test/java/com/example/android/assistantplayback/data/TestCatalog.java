@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.assistantplayback.data;
+
+import com.example.android.assistantplayback.model.Movie;
+import com.example.android.assistantplayback.model.MovieBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A list of movies with an index of their positions, kept the way {@link MockDatabase} keeps its
+ * catalog, for the tests of the indexes built over it. Also creates movies and lists of ids for
+ * assertions.
+ */
+class TestCatalog {
+
+    private static final String[] SYLLABLES = {
+        "ka", "lo", "ri", "ten", "mar", "sel", "vo", "dun", "pa", "gre", "shi", "ton", "bel", "ax",
+        "que", "mi", "dor", "el", "zan", "fu"
+    };
+    private static final int VOCABULARY_SIZE = 5000;
+
+    private final List<Movie> mMovies = new ArrayList<>();
+    private final IdIndexMap mIdIndex = new IdIndexMap(8);
+
+    List<Movie> getMovies() {
+        return mMovies;
+    }
+
+    IdIndexMap getIdIndex() {
+        return mIdIndex;
+    }
+
+    /** Adds a movie at the end of the catalog. */
+    void add(Movie movie) {
+        mIdIndex.put(movie.getId(), mMovies.size());
+        mMovies.add(movie);
+    }
+
+    /**
+     * Removes a movie, the movies after it move up.
+     *
+     * @return The removed movie.
+     */
+    Movie remove(int id) {
+        int index = mIdIndex.get(id);
+        Movie movie = mMovies.remove(index);
+        mIdIndex.remove(id);
+        for (int i = index; i < mMovies.size(); i++) {
+            mIdIndex.put(mMovies.get(i).getId(), i);
+        }
+        return movie;
+    }
+
+    static Movie createMovie(int id, String title, String description) {
+        return new MovieBuilder()
+                .setId(id)
+                .setTitle(title)
+                .setDescription(description)
+                .createMovie();
+    }
+
+    /**
+     * Creates movies with made up titles and descriptions. The words are drawn from a vocabulary
+     * of a few thousand, so movies share words like in a real catalog.
+     *
+     * @param count Number of movies, with ids from 1 to count.
+     * @param seed Seed of the words, the same seed gives the same movies.
+     */
+    static List<Movie> createMovies(int count, long seed) {
+        Random random = new Random(seed);
+        String[] vocabulary = new String[VOCABULARY_SIZE];
+        for (int i = 0; i < vocabulary.length; i++) {
+            StringBuilder word = new StringBuilder();
+            for (int syllable = 2 + random.nextInt(3); syllable > 0; syllable--) {
+                word.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+            }
+            vocabulary[i] = word.toString();
+        }
+        List<Movie> movies = new ArrayList<>(count);
+        for (int id = 1; id <= count; id++) {
+            movies.add(
+                    createMovie(
+                            id,
+                            createText(vocabulary, 2 + random.nextInt(2), random),
+                            createText(vocabulary, 12 + random.nextInt(8), random)));
+        }
+        return movies;
+    }
+
+    /** Joins random words of the vocabulary into a sentence, capitalized like a real one. */
+    private static String createText(String[] vocabulary, int words, Random random) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                text.append(' ');
+            }
+            String word = vocabulary[random.nextInt(vocabulary.length)];
+            text.append(i == 0 ? Character.toUpperCase(word.charAt(0)) + word.substring(1) : word);
+        }
+        return text.toString();
+    }
+
+    static List<Integer> ids(List<Movie> movies) {
+        List<Integer> ids = new ArrayList<>();
+        for (Movie movie : movies) {
+            ids.add(movie.getId());
+        }
+        return ids;
+    }
+
+    static List<Integer> ids(Integer... ids) {
+        List<Integer> list = new ArrayList<>();
+        for (int id : ids) {
+            list.add(id);
+        }
+        return list;
+    }
+}
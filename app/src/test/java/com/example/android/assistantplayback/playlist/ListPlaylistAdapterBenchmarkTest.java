@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.assistantplayback.playlist;
+
+import static com.example.android.assistantplayback.Measurements.bytesPerRun;
+import static com.example.android.assistantplayback.Measurements.canMeasureAllocations;
+import static com.example.android.assistantplayback.Measurements.report;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.support.annotation.NonNull;
+import android.support.v4.media.MediaDescriptionCompat;
+import android.support.v4.media.MediaMetadataCompat;
+import android.support.v4.media.session.PlaybackStateCompat;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Replays a session of transport events on a playlist, and counts the conversions and the memory
+ * they allocate with and without the cache of mapped items.
+ */
+public class ListPlaylistAdapterBenchmarkTest {
+
+    private static final int ITEMS = 20;
+    private static final int EVENTS = 1_000;
+    private static final int RUNS = 15;
+
+    private CountingPlaylistAdapter mAdapter;
+
+    @Before
+    public void setUp() {
+        List<String> items = new ArrayList<>();
+        for (int i = 0; i < ITEMS; i++) {
+            items.add("Movie " + i);
+        }
+        mAdapter = new CountingPlaylistAdapter(items);
+        mAdapter.setRepeatMode(PlaybackStateCompat.REPEAT_MODE_ALL);
+    }
+
+    @Test
+    public void transportEvents_convertEachItemOnce() {
+        playSession(mAdapter, false);
+
+        assertEquals(ITEMS, mAdapter.getMapCount());
+        assertEquals(ITEMS, mAdapter.getMetadataCount());
+
+        playSession(mAdapter, false);
+
+        assertEquals(ITEMS, mAdapter.getMapCount());
+        assertEquals(ITEMS, mAdapter.getMetadataCount());
+    }
+
+    @Test
+    public void transportEvents_onceCached_allocateNothing() {
+        Assume.assumeTrue(canMeasureAllocations());
+
+        long cached =
+                bytesPerRun(
+                        new Runnable() {
+                            @Override
+                            public void run() {
+                                playSession(mAdapter, false);
+                            }
+                        },
+                        RUNS);
+        long uncached =
+                bytesPerRun(
+                        new Runnable() {
+                            @Override
+                            public void run() {
+                                playSession(mAdapter, true);
+                            }
+                        },
+                        RUNS);
+        report(
+                "ListPlaylistAdapter over " + EVENTS + " transport events",
+                cached + " bytes cached, " + uncached + " bytes converting every item again");
+        assertEquals(0, cached / EVENTS);
+        assertTrue(cached * 100 < uncached);
+    }
+
+    /**
+     * Plays the events a media session sends during playback: skips, state refreshes that read
+     * the current item, metadata updates and the preloading of the next item.
+     *
+     * @param invalidate True to drop the cache before every event, as without it.
+     */
+    private static void playSession(ListPlaylistAdapter<?> adapter, boolean invalidate) {
+        for (int event = 0; event < EVENTS; event++) {
+            if (invalidate) {
+                adapter.invalidateAll();
+            }
+            switch (event % 5) {
+                case 0:
+                    adapter.skipToNextItem();
+                    break;
+                case 1:
+                    adapter.getCurrentItem();
+                    break;
+                case 2:
+                    adapter.getCurrentMetadata();
+                    break;
+                case 3:
+                    adapter.peekNextItem();
+                    break;
+                default:
+                    if (event % 3 == 0) {
+                        adapter.skipToPreviousItem();
+                    } else {
+                        adapter.getCurrentMetadata();
+                    }
+                    break;
+            }
+        }
+    }
+
+    /** Maps titles and counts the conversions. */
+    private static class CountingPlaylistAdapter extends ListPlaylistAdapter<String> {
+
+        private int mMapCount;
+        private int mMetadataCount;
+
+        CountingPlaylistAdapter(List<String> items) {
+            super(items, 0);
+        }
+
+        int getMapCount() {
+            return mMapCount;
+        }
+
+        int getMetadataCount() {
+            return mMetadataCount;
+        }
+
+        @Override
+        protected MediaDescriptionCompat map(String title) {
+            mMapCount++;
+            return new MediaDescriptionCompat.Builder()
+                    .setMediaId(title)
+                    .setTitle(title)
+                    .setDescription(title)
+                    .build();
+        }
+
+        @NonNull
+        @Override
+        public MediaMetadataCompat mapToMetadata(MediaDescriptionCompat item) {
+            mMetadataCount++;
+            return super.mapToMetadata(item);
+        }
+    }
+}